@@ -0,0 +1,27 @@
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which adds the allocation rate (<tt> gc.alloc.rate.norm </tt>, bytes per
+ * operation) to every score, and writes the results as JSON for comparison between builds. Run from the <tt> 2048
+ * </tt> directory with annotation processing enabled, so JMH can generate its harness.
+ */
+public class BenchmarkRunner {
+    /** Arguments: <tt> [regex [resultPath]] </tt>, selecting benchmarks by name; runs all of them by default. */
+    public static void main(String[] args) throws RunnerException {
+        String include = (args.length > 0) ? args[0] : "Benchmark";
+        String result = (args.length > 1) ? args[1] : "bench-results.json";
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Board moves and game-over checks, on the array board and on packed boards. Scores are per board state. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+    private Corpus corpus;
+    private Board[] boards;
+    /** Receives shifted boards, so that shifting does not allocate. */
+    private Board dest;
+
+    @Setup
+    public void setup() {
+        corpus = Corpus.load(Corpus.SIZE);
+        boards = new Board[Corpus.SIZE];
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            boards[i] = corpus.board(i);
+        }
+        dest = new Board(new int[4][4], 0);
+    }
+
+    /** All four shifts of each board with <tt> Board.shiftInto </tt>. */
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void shift(Blackhole bh) {
+        for (Board b : boards) {
+            for (char dir : BitBoard.MOVES) {
+                bh.consume(b.shiftInto(dir, dest));
+            }
+        }
+    }
+
+    /** All four shifts of each board with <tt> Board.successor </tt>, which allocates the successor boards. */
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void successor(Blackhole bh) {
+        for (Board b : boards) {
+            for (char dir : BitBoard.MOVES) {
+                bh.consume(b.successor(dir));
+            }
+        }
+    }
+
+    /** All four shifts of each packed board. */
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void packedMove(Blackhole bh) {
+        for (long b : corpus.boards) {
+            for (char dir : BitBoard.MOVES) {
+                bh.consume(BitBoard.move(b, dir));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void checkGameOver(Blackhole bh) {
+        for (Board b : boards) {
+            bh.consume(b.checkGameOver());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void isGameOver(Blackhole bh) {
+        for (Board b : boards) {
+            bh.consume(b.isGameOver());
+        }
+    }
+}
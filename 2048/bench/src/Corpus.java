@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A fixed sample of board states from <tt> Data/Results.txt </tt> shared by the benchmarks. The sample is drawn with a
+ * fixed seed, so every run of every build measures the same boards. Benchmarks are run from the <tt> 2048 </tt>
+ * directory, like the rest of the project.
+ */
+public class Corpus {
+    /** Sample data the boards are drawn from. */
+    public static final String PATH = "Data/Results.txt";
+    /** Seed of the sample. */
+    public static final long SEED = 2048;
+    /** Number of boards in the sample. */
+    public static final int SIZE = 256;
+
+    /** Packed board states. */
+    public final long[] boards;
+    /** Final score of the game of each board state. */
+    public final int[] scores;
+    /** Number of moves left in the game of each board state. */
+    public final int[] movesLeft;
+
+    private Corpus(int n) {
+        boards = new long[n];
+        scores = new int[n];
+        movesLeft = new int[n];
+    }
+
+    /**
+     * Returns <tt> n </tt> records of <tt> PATH </tt> chosen with seed <tt> SEED </tt>, repeating records if the file
+     * holds fewer. Throws <tt> UncheckedIOException </tt> if the file cannot be read.
+     */
+    public static Corpus load(int n) {
+        List<GameRecord> records = new ArrayList<>();
+        try (GameRecordReader in = new GameRecordReader(PATH)) {
+            for (GameRecord r = in.next(); r != null; r = in.next()) {
+                records.add(r);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Collections.shuffle(records, new Random(SEED));
+
+        Corpus c = new Corpus(n);
+        for (int i = 0; i < n; i++) {
+            GameRecord r = records.get(i % records.size());
+            c.boards[i] = r.board;
+            c.scores[i] = r.score;
+            c.movesLeft[i] = r.movesLeft;
+        }
+        return c;
+    }
+
+    /** Returns board state <tt> i </tt> as a <tt> Board </tt>. */
+    public Board board(int i) {
+        int[][] tiles = new int[4][4];
+        BitBoard.unpack(boards[i], tiles);
+        return new Board(tiles, 0);
+    }
+
+    /** Returns board state <tt> i </tt> as network inputs: the 16 tile values row by row. */
+    public double[] inputs(int i) {
+        double[] x = new double[16];
+        for (int k = 0; k < 16; k++) {
+            x[k] = BitBoard.value(boards[i], k / 4, k % 4);
+        }
+        return x;
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** The evaluation functions of <tt> MinimaxAI </tt>. Scores are per board state. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvalBenchmark {
+    private Corpus corpus;
+    /** Hand-crafted evaluation, <tt> MinimaxAI.eval </tt>. */
+    private Evaluator eval;
+    /** Neural network evaluation. */
+    private Evaluator evalNN;
+    private Evaluator evalTable;
+    /** N-tuple network with the default tuples; lookups cost the same whatever the weights. */
+    private Evaluator evalNTuple;
+    private double[] out;
+
+    @Setup
+    public void setup() {
+        corpus = Corpus.load(Corpus.SIZE);
+        MinimaxAI m = new MinimaxAI(corpus.board(0));
+        eval = m.getEvaluator();
+        m.useNeuralNetwork(true);
+        evalNN = m.getEvaluator();
+        evalTable = new TableEvaluator();
+        evalNTuple = new NTupleNetwork();
+        out = new double[Corpus.SIZE];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void eval(Blackhole bh) {
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            bh.consume(eval.evaluate(corpus.boards[i], corpus.scores[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void evalNN(Blackhole bh) {
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            bh.consume(evalNN.evaluate(corpus.boards[i], corpus.scores[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void evalTable(Blackhole bh) {
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            bh.consume(evalTable.evaluate(corpus.boards[i], corpus.scores[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void evalNTuple(Blackhole bh) {
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            bh.consume(evalNTuple.evaluate(corpus.boards[i], corpus.scores[i]));
+        }
+    }
+
+    /** The whole corpus as one batch, as evaluated by leaf batching. */
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public double[] evalNNBatch() {
+        evalNN.evaluate(corpus.boards, corpus.scores, Corpus.SIZE, out);
+        return out;
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Forward and backward propagation of <tt> NeuralNetwork </tt> and <tt> FlatNeuralNetwork </tt> with the weights of
+ * <tt> Data/NeuralNetwork1 </tt>. Scores are per sample. Training benchmarks run one epoch over the corpus per
+ * invocation, so the networks keep changing; <tt> backProp </tt> prints a line per epoch.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NetworkBenchmark {
+    private static final String NETWORK = "Data/NeuralNetwork1";
+
+    private NeuralNetwork nn;
+    private FlatNeuralNetwork flat;
+    private List<double[]> x;
+    private List<Double> y;
+    /** Inputs of the corpus one after another, and their expected outputs. */
+    private double[] batchX;
+    private double[] batchY;
+
+    @Setup
+    public void setup() {
+        nn = new NeuralNetwork(NETWORK, new Logistic());
+        flat = new FlatNeuralNetwork(NETWORK, new Logistic());
+
+        Corpus corpus = Corpus.load(Corpus.SIZE);
+        x = new ArrayList<>(Corpus.SIZE);
+        y = new ArrayList<>(Corpus.SIZE);
+        batchX = new double[16 * Corpus.SIZE];
+        batchY = new double[Corpus.SIZE];
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            double[] in = corpus.inputs(i);
+            x.add(in);
+            System.arraycopy(in, 0, batchX, 16 * i, 16);
+            batchY[i] = 1 + Math.min(4, corpus.scores[i] / 20000); // classes of NeuralNetworkTraining
+            y.add(batchY[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void forwardProp(Blackhole bh) {
+        for (double[] in : x) {
+            bh.consume(nn.forwardProp(in));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void flatForwardProp(Blackhole bh) {
+        for (double[] in : x) {
+            bh.consume(flat.forwardProp(in));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public double[] flatForwardPropBatch() {
+        double[] out = new double[Corpus.SIZE];
+        flat.forwardProp(batchX, Corpus.SIZE, out);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void backProp() {
+        nn.backProp(x, y, 1, 0.01);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void flatBackProp() {
+        flat.backProp(x, y, 1, 0.01);
+    }
+
+    /** One mini-batch update over the whole corpus. */
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public void flatTrainBatch() {
+        flat.trainBatch(batchX, batchY, Corpus.SIZE, 0.01);
+    }
+}
@@ -0,0 +1,48 @@
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A full move of <tt> MinimaxAI </tt> at several depths and search modes. Each invocation chooses a move on the next
+ * board of the corpus; the move is not played, so every run searches the same positions regardless of the spawned
+ * tiles. Scores are moves per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+    @Param({"2", "4", "6"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean expectimax;
+
+    @Param({"false", "true"})
+    public boolean useNN;
+
+    private Board[] boards;
+    private MinimaxAI m;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Corpus corpus = Corpus.load(Corpus.SIZE);
+        boards = new Board[Corpus.SIZE];
+        for (int i = 0; i < Corpus.SIZE; i++) {
+            boards[i] = corpus.board(i);
+        }
+        m = new MinimaxAI(boards[0]);
+        m.setDepth(depth);
+        m.setExpectimax(expectimax);
+        m.useNeuralNetwork(useNN);
+    }
+
+    @Benchmark
+    public char chooseMove() {
+        m.b = boards[next];
+        next = (next + 1) % boards.length;
+        return m.chooseMove();
+    }
+}
@@ -0,0 +1,273 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongFunction;
+
+/**
+ * Plays seeded games with several AI strategies and reports their strength and cost side by side. Game <tt> i </tt>
+ * starts from the seed <tt> SelfPlay.gameSeed(seed, i) </tt> for every strategy, so strategies face the same tile
+ * spawns as long as they play the same moves. Games of a strategy are played in parallel; strategies are played one
+ * after another so their timings do not interfere.
+ */
+public class Arena {
+    /** Chooses moves for one game. A new player is created for every game, so players may keep state. */
+    public interface Player {
+        /** Returns the move to play on <tt> board </tt>, which is not over. */
+        char chooseMove(Board board);
+    }
+
+    /** Results of the games of one strategy. */
+    public static class Result {
+        public final String name;
+        /** Final score of each game, sorted. */
+        public final int[] scores;
+        /** Largest tile of each game, sorted. */
+        public final int[] maxTiles;
+        /** Total number of moves played. */
+        public final long moves;
+        /** Wall-clock time taken to play all games, in seconds. */
+        public final double seconds;
+
+        Result(String name, int[] scores, int[] maxTiles, long moves, double seconds) {
+            this.name = name;
+            this.scores = scores;
+            this.maxTiles = maxTiles;
+            this.moves = moves;
+            this.seconds = seconds;
+            Arrays.sort(scores);
+            Arrays.sort(maxTiles);
+        }
+
+        public double gamesPerSecond() {
+            return scores.length / seconds;
+        }
+
+        public double movesPerSecond() {
+            return moves / seconds;
+        }
+
+        /** Returns the fraction of games reaching a tile of at least <tt> tile </tt>. */
+        public double rate(int tile) {
+            int count = 0;
+            for (int t : maxTiles) {
+                if (t >= tile) {
+                    count++;
+                }
+            }
+            return (double) count / maxTiles.length;
+        }
+
+        private Object[] values() {
+            return new Object[]{name, scores.length, seconds, gamesPerSecond(), movesPerSecond(), mean(scores),
+                    percentile(scores, 0.5), percentile(scores, 0.99), mean(maxTiles), percentile(maxTiles, 0.5),
+                    percentile(maxTiles, 0.99), rate(2048), rate(4096), rate(8192)};
+        }
+    }
+
+    /** Columns of the report, in the order of <tt> Result.values </tt>. */
+    private static final String[] COLUMNS = {"strategy", "games", "seconds", "games_per_sec", "moves_per_sec",
+            "score_mean", "score_p50", "score_p99", "max_tile_mean", "max_tile_p50", "max_tile_p99", "rate_2048",
+            "rate_4096", "rate_8192"};
+
+    /** Strategies in the order they were registered. */
+    private final Map<String, LongFunction<Player>> strategies = new LinkedHashMap<>();
+    private final int threads;
+    private final long seed;
+
+    /** Initializes an arena playing on <tt> threads </tt> threads, with games seeded from <tt> seed </tt>. */
+    public Arena(int threads, long seed) {
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * Adds a strategy named <tt> name </tt>; <tt> factory </tt> creates the player of each game from the seed of the
+     * game.
+     */
+    public void register(String name, LongFunction<Player> factory) {
+        strategies.put(name, factory);
+    }
+
+    /** Returns a player choosing moves with <tt> m </tt>, searching as <tt> m </tt> is configured. */
+    public static Player player(MinimaxAI m) {
+        return board -> {
+            m.b = board;
+            return m.chooseMove();
+        };
+    }
+
+    /**
+     * Plays <tt> n </tt> games with every registered strategy and returns their results. Throws <tt>
+     * ExecutionException </tt> if a game fails.
+     */
+    public List<Result> run(int n) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Result> results = new ArrayList<>();
+        try {
+            for (Map.Entry<String, LongFunction<Player>> e : strategies.entrySet()) {
+                results.add(play(pool, e.getKey(), e.getValue(), n));
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /** Plays <tt> n </tt> games of a single strategy on <tt> pool </tt>. */
+    private Result play(ExecutorService pool, String name, LongFunction<Player> factory, int n)
+            throws InterruptedException, ExecutionException {
+        int[] scores = new int[n];
+        int[] maxTiles = new int[n];
+        long[] moves = new long[n];
+
+        List<Callable<Void>> games = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int game = i;
+            games.add(() -> {
+                long gameSeed = SelfPlay.gameSeed(seed, game);
+                Board b = new Board(gameSeed);
+                Player p = factory.apply(gameSeed);
+                while (!b.isGameOver()) {
+                    b.play(p.chooseMove(b));
+                    moves[game]++;
+                }
+                scores[game] = b.score;
+                maxTiles[game] = maxTile(b);
+                return null;
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Future<Void> f : pool.invokeAll(games)) {
+            f.get(); // surface failed games
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long totalMoves = 0;
+        for (long m : moves) {
+            totalMoves += m;
+        }
+        return new Result(name, scores, maxTiles, totalMoves, seconds);
+    }
+
+    private static int maxTile(Board b) {
+        int max = 0;
+        for (int[] row : b.board) {
+            for (int tile : row) {
+                max = Math.max(max, tile);
+            }
+        }
+        return max;
+    }
+
+    private static double mean(int[] values) {
+        long sum = 0;
+        for (int v : values) {
+            sum += v;
+        }
+        return (double) sum / values.length;
+    }
+
+    /** Returns the <tt> p </tt> quantile of the sorted <tt> values </tt> by the nearest-rank method. */
+    private static int percentile(int[] values, double p) {
+        int rank = (int) Math.ceil(p * values.length);
+        return values[Math.max(rank, 1) - 1];
+    }
+
+    /** Prints <tt> results </tt> as CSV with a header line. */
+    public static void writeCsv(List<Result> results, PrintStream out) {
+        out.println(String.join(",", COLUMNS));
+        for (Result r : results) {
+            StringJoiner line = new StringJoiner(",");
+            for (Object v : r.values()) {
+                line.add(format(v));
+            }
+            out.println(line);
+        }
+    }
+
+    /** Prints <tt> results </tt> as a JSON array with one object per strategy. */
+    public static void writeJson(List<Result> results, PrintStream out) {
+        out.println("[");
+        for (int i = 0; i < results.size(); i++) {
+            Object[] values = results.get(i).values();
+            StringJoiner object = new StringJoiner(", ", "  {", "}");
+            for (int k = 0; k < COLUMNS.length; k++) {
+                String v = (values[k] instanceof String) ? "\"" + values[k] + "\"" : format(values[k]);
+                object.add("\"" + COLUMNS[k] + "\": " + v);
+            }
+            out.println(object + (i < results.size()-1 ? "," : ""));
+        }
+        out.println("]");
+    }
+
+    private static String format(Object v) {
+        return (v instanceof Double) ? String.format(Locale.ROOT, "%.4f", (Double) v) : String.valueOf(v);
+    }
+
+    /** Arguments: <tt> games [csv|json [seed [threads]]] </tt>. */
+    public static void main(String[] args) throws Exception {
+        int n = Integer.parseInt(args[0]);
+        boolean json = args.length > 1 && args[1].equals("json");
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 0;
+        int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        Arena arena = new Arena(threads, seed);
+        arena.register("random", gameSeed -> new RandomMovesAI(gameSeed)::chooseMove);
+        arena.register("minimax-4", gameSeed -> {
+            MinimaxAI m = new MinimaxAI();
+            m.setDepth(4);
+            return player(m);
+        });
+        arena.register("expectimax-3", gameSeed -> {
+            MinimaxAI m = new MinimaxAI();
+            m.setDepth(3);
+            m.setExpectimax(true);
+            return player(m);
+        });
+        TableEvaluator table = new TableEvaluator();
+        arena.register("expectimax-table-3", gameSeed -> {
+            MinimaxAI m = new MinimaxAI();
+            m.setDepth(3);
+            m.setExpectimax(true);
+            m.setEvaluator(table);
+            return player(m);
+        });
+        arena.register("expectimax-table-adaptive", gameSeed -> {
+            MinimaxAI m = new MinimaxAI();
+            m.setDepth(6);
+            m.setExpectimax(true);
+            m.setEvaluator(table);
+            m.setAdaptiveDepth(true);
+            m.setProbabilityCutoff(0.001);
+            return player(m);
+        });
+        arena.register("expectimax-nn-3", gameSeed -> {
+            MinimaxAI m = new MinimaxAI();
+            m.setDepth(3);
+            m.setExpectimax(true);
+            m.useNeuralNetwork(true);
+            return player(m);
+        });
+        if (new File(NTupleNetwork.DEFAULT_FILE).exists()) {
+            NTupleNetwork ntuple = NTupleNetwork.load(NTupleNetwork.DEFAULT_FILE);
+            arena.register("expectimax-ntuple-3", gameSeed -> {
+                MinimaxAI m = new MinimaxAI();
+                m.setDepth(3);
+                m.setExpectimax(true);
+                m.setEvaluator(ntuple);
+                return player(m);
+            });
+        }
+
+        List<Result> results = arena.run(n);
+        if (json) {
+            writeJson(results, System.out);
+        }
+        else {
+            writeCsv(results, System.out);
+        }
+    }
+}
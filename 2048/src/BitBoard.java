@@ -0,0 +1,290 @@
+/**
+ * Packed representation of a 4x4 2048 board. The whole board fits in a single <tt> long </tt>: each tile is stored as
+ * a 4-bit exponent (0 for an empty square, <tt> k </tt> for a tile of value <tt> 2^k </tt>), row <tt> i </tt> occupies
+ * bits <tt> 16i </tt> to <tt> 16i+15 </tt> and column <tt> j </tt> of that row occupies bits <tt> 4j </tt> to
+ * <tt> 4j+3 </tt> of the row. Shifts are answered from precomputed tables covering all 65536 possible rows, so a move
+ * costs a handful of table lookups and never allocates. The largest representable tile is 32768; merging two 32768
+ * tiles is not supported.
+ */
+public final class BitBoard {
+    /** Number of possible 16-bit rows. */
+    static final int ROWS = 65536;
+    /** Mask for a single row. */
+    static final long ROW_MASK = 0xFFFFL;
+
+    /** Number of reflections and rotations of the board, including the identity. */
+    public static final int SYMMETRIES = 8;
+
+    /** Moves in the order they are tried by the AIs. */
+    public static final char[] MOVES = {'L', 'R', 'D', 'U'};
+
+    /** Row after shifting leftwards (towards column 0). */
+    private static final char[] ROW_LEFT = new char[ROWS];
+    /** Row after shifting rightwards (towards column 3). */
+    private static final char[] ROW_RIGHT = new char[ROWS];
+    /** Score gained by shifting the row leftwards. */
+    private static final int[] SCORE_LEFT = new int[ROWS];
+    /** Score gained by shifting the row rightwards. */
+    private static final int[] SCORE_RIGHT = new int[ROWS];
+
+    static {
+        int[] line = new int[4];
+        for (int row = 0; row < ROWS; row++) {
+            for (int j = 0; j < 4; j++) {
+                line[j] = (row >>> (4 * j)) & 0xF;
+            }
+            int score = slide(line);
+            ROW_LEFT[row] = (char) (line[0] | (line[1] << 4) | (line[2] << 8) | (line[3] << 12));
+            SCORE_LEFT[row] = score;
+
+            for (int j = 0; j < 4; j++) { // same row read from the right
+                line[j] = (row >>> (4 * (3 - j))) & 0xF;
+            }
+            score = slide(line);
+            ROW_RIGHT[row] = (char) (line[3] | (line[2] << 4) | (line[1] << 8) | (line[0] << 12));
+            SCORE_RIGHT[row] = score;
+        }
+    }
+
+    private BitBoard() {}
+
+    /**
+     * Slides the exponents in <tt> line </tt> towards index 0, merging equal neighbours once per move exactly like
+     * <tt> Board.shiftLeft </tt>. Returns the score gained by the merges.
+     */
+    private static int slide(int[] line) {
+        int score = 0;
+        int cat = 0; // next free position
+        int dog = -1; // position of the last tile which may still merge
+
+        for (int mouse = 0; mouse < 4; mouse++) {
+            int e = line[mouse];
+            if (e == 0) {
+                continue;
+            }
+            line[mouse] = 0;
+            if (dog >= 0 && line[dog] == e && e < 15) { // merge tiles
+                line[dog] = e + 1;
+                score += 1 << (e + 1);
+                dog = -1;
+            }
+            else {
+                line[cat] = e;
+                dog = cat++;
+            }
+        }
+        return score;
+    }
+
+    /** Returns the packed form of the 4x4 tile values in <tt> board </tt>. */
+    public static long pack(int[][] board) {
+        long ret = 0;
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                int v = board[i][j];
+                if (v != 0) {
+                    ret |= (long) Integer.numberOfTrailingZeros(v) << shift(i, j);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /** Writes the tile values of <tt> b </tt> into the 4x4 array <tt> board </tt>. */
+    public static void unpack(long b, int[][] board) {
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                board[i][j] = value(b, i, j);
+            }
+        }
+    }
+
+    /** Returns true if every tile value in <tt> board </tt> can be packed and moved without overflowing. */
+    public static boolean fits(int[][] board) {
+        if (board.length != 4) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                if (board[i][j] >= 32768) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Bit offset of the square at row <tt> i </tt>, column <tt> j </tt>. */
+    public static int shift(int i, int j) {
+        return 16 * i + 4 * j;
+    }
+
+    /** Returns the exponent stored at row <tt> i </tt>, column <tt> j </tt> (0 if empty). */
+    public static int exponent(long b, int i, int j) {
+        return (int) (b >>> shift(i, j)) & 0xF;
+    }
+
+    /** Returns the tile value at row <tt> i </tt>, column <tt> j </tt> (0 if empty). */
+    public static int value(long b, int i, int j) {
+        int e = exponent(b, i, j);
+        return (e == 0) ? 0 : 1 << e;
+    }
+
+    /** Returns row <tt> i </tt> of <tt> b </tt> as a 16-bit index into the row tables. */
+    public static int row(long b, int i) {
+        return (int) ((b >>> (16 * i)) & ROW_MASK);
+    }
+
+    /** Swaps rows and columns of <tt> b </tt>. */
+    public static long transpose(long b) {
+        long a1 = b & 0xF0F00F0FF0F00F0FL;
+        long a2 = b & 0x0000F0F00000F0F0L;
+        long a3 = b & 0x0F0F00000F0F0000L;
+        long a = a1 | (a2 << 12) | (a3 >>> 12);
+        long b1 = a & 0xFF00FF0000FF00FFL;
+        long b2 = a & 0x00FF00FF00000000L;
+        long b3 = a & 0x00000000FF00FF00L;
+        return b1 | (b2 >>> 24) | (b3 << 24);
+    }
+
+    /** Returns <tt> b </tt> mirrored left to right: column <tt> j </tt> becomes column <tt> 3-j </tt>. */
+    public static long flipColumns(long b) {
+        b = ((b >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((b & 0x0F0F0F0F0F0F0F0FL) << 4);
+        return ((b >>> 8) & 0x00FF00FF00FF00FFL) | ((b & 0x00FF00FF00FF00FFL) << 8);
+    }
+
+    /** Returns <tt> b </tt> mirrored top to bottom: row <tt> i </tt> becomes row <tt> 3-i </tt>. */
+    public static long flipRows(long b) {
+        b = ((b >>> 16) & 0x0000FFFF0000FFFFL) | ((b & 0x0000FFFF0000FFFFL) << 16);
+        return (b >>> 32) | (b << 32);
+    }
+
+    /**
+     * Returns the image of <tt> b </tt> under symmetry <tt> sym </tt>, between 0 and <tt> SYMMETRIES </tt>
+     * (exclusive): bit 0 flips the columns, then bit 1 flips the rows, then bit 2 transposes. Symmetry 0 is the
+     * identity.
+     */
+    public static long transform(long b, int sym) {
+        if ((sym & 1) != 0) {
+            b = flipColumns(b);
+        }
+        if ((sym & 2) != 0) {
+            b = flipRows(b);
+        }
+        if ((sym & 4) != 0) {
+            b = transpose(b);
+        }
+        return b;
+    }
+
+    /**
+     * Returns the canonical form of <tt> b </tt>: the smallest of its eight reflections and rotations, compared as
+     * signed <tt> long </tt>s. Boards related by a symmetry have the same canonical form, so it serves as a key for
+     * evaluators which score all of them the same.
+     */
+    public static long canonical(long b) {
+        long t = transpose(b); // transposing after a flip equals flipping the other axis after transposing
+        long c = flipColumns(b);
+        long tc = flipColumns(t);
+        long min = Math.min(Math.min(b, c), Math.min(flipRows(b), flipRows(c)));
+        return Math.min(min, Math.min(Math.min(t, tc), Math.min(flipRows(t), flipRows(tc))));
+    }
+
+    /** Returns the number of empty squares on <tt> b </tt>. */
+    public static int countEmpty(long b) {
+        return Long.bitCount(emptyMask(b));
+    }
+
+    /** Returns a mask with the lowest bit of every empty square's nibble set. */
+    public static long emptyMask(long b) {
+        b |= (b >>> 2) & 0x3333333333333333L;
+        b |= (b >>> 1);
+        return ~b & 0x1111111111111111L;
+    }
+
+    /**
+     * Returns <tt> b </tt> with a tile of exponent <tt> exponent </tt> (1 or 2) placed on its <tt> k </tt>-th empty
+     * square in row-major order. Finds the square from the empty mask without scanning the board.
+     */
+    public static long spawn(long b, int k, int exponent) {
+        long empty = emptyMask(b);
+        for (; k > 0; k--) { // drop the k lowest empty squares
+            empty &= empty - 1;
+        }
+        return b | ((empty & -empty) << (exponent - 1));
+    }
+
+    private static long rowsLeft(long b) {
+        return ROW_LEFT[(int) (b & ROW_MASK)]
+                | ((long) ROW_LEFT[(int) ((b >>> 16) & ROW_MASK)] << 16)
+                | ((long) ROW_LEFT[(int) ((b >>> 32) & ROW_MASK)] << 32)
+                | ((long) ROW_LEFT[(int) (b >>> 48)] << 48);
+    }
+
+    private static long rowsRight(long b) {
+        return ROW_RIGHT[(int) (b & ROW_MASK)]
+                | ((long) ROW_RIGHT[(int) ((b >>> 16) & ROW_MASK)] << 16)
+                | ((long) ROW_RIGHT[(int) ((b >>> 32) & ROW_MASK)] << 32)
+                | ((long) ROW_RIGHT[(int) (b >>> 48)] << 48);
+    }
+
+    private static int scoreLeft(long b) {
+        return SCORE_LEFT[(int) (b & ROW_MASK)] + SCORE_LEFT[(int) ((b >>> 16) & ROW_MASK)]
+                + SCORE_LEFT[(int) ((b >>> 32) & ROW_MASK)] + SCORE_LEFT[(int) (b >>> 48)];
+    }
+
+    private static int scoreRight(long b) {
+        return SCORE_RIGHT[(int) (b & ROW_MASK)] + SCORE_RIGHT[(int) ((b >>> 16) & ROW_MASK)]
+                + SCORE_RIGHT[(int) ((b >>> 32) & ROW_MASK)] + SCORE_RIGHT[(int) (b >>> 48)];
+    }
+
+    /** Returns <tt> b </tt> shifted leftwards. */
+    public static long left(long b) {
+        return rowsLeft(b);
+    }
+
+    /** Returns <tt> b </tt> shifted rightwards. */
+    public static long right(long b) {
+        return rowsRight(b);
+    }
+
+    /** Returns <tt> b </tt> shifted upwards (towards row 0). */
+    public static long up(long b) {
+        return transpose(rowsLeft(transpose(b)));
+    }
+
+    /** Returns <tt> b </tt> shifted downwards (towards row 3). */
+    public static long down(long b) {
+        return transpose(rowsRight(transpose(b)));
+    }
+
+    /**
+     * Returns <tt> b </tt> shifted in the direction <tt> dir </tt> ('L', 'R', 'U' or 'D'). The result equals <tt> b
+     * </tt> if the move does not change the board. Returns <tt> b </tt> unchanged if <tt> dir </tt> is not recognized.
+     */
+    public static long move(long b, char dir) {
+        switch (dir) {
+            case 'L': return left(b);
+            case 'R': return right(b);
+            case 'U': return up(b);
+            case 'D': return down(b);
+            default: return b;
+        }
+    }
+
+    /** Returns the score gained by shifting <tt> b </tt> in the direction <tt> dir </tt>. */
+    public static int moveScore(long b, char dir) {
+        switch (dir) {
+            case 'L': return scoreLeft(b);
+            case 'R': return scoreRight(b);
+            case 'U': return scoreLeft(transpose(b));
+            case 'D': return scoreRight(transpose(b));
+            default: return 0;
+        }
+    }
+
+    /** Returns true if no move changes <tt> b </tt>. */
+    public static boolean isGameOver(long b) {
+        return left(b) == b && right(b) == b && up(b) == b && down(b) == b;
+    }
+}
@@ -24,6 +24,8 @@ public class Board {
     /** Future board state after shifting upwards. Null if shifting up leaves board unchanged. */
     public Board upBoard;
 
+    /** Chooses the new tile after each move. */
+    private TileSpawner spawner = TileSpawner.threadLocal();
 
     /** Default constructor: initializes 4x4 board and generates two starter tiles randomly. */
     public Board() {
@@ -34,6 +36,40 @@ public class Board {
         generateNewTile();
     }
 
+    /**
+     * Constructor: initializes 4x4 board and generates two starter tiles. All tiles of the game are generated from
+     * <tt> seed </tt>, so the same seed and the same moves always give the same game.
+     */
+    public Board(long seed) {
+        this(TileSpawner.seeded(seed));
+    }
+
+    /** Constructor: initializes 4x4 board and generates the two starter tiles and all later ones with <tt> spawner
+     * </tt>. */
+    public Board(TileSpawner spawner) {
+        BOARD_SIZE = 4;
+        board = new int[BOARD_SIZE][BOARD_SIZE];
+        numFreeTiles = BOARD_SIZE * BOARD_SIZE;
+        this.spawner = spawner;
+        generateNewTile();
+        generateNewTile();
+    }
+
+    /** Constructor: initializes a board holding a copy of the square array <tt> tiles </tt> with score <tt> s </tt>. */
+    public Board(int[][] tiles, int s) {
+        BOARD_SIZE = tiles.length;
+        board = new int[BOARD_SIZE][BOARD_SIZE];
+        score = s;
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            for (int j = 0; j < BOARD_SIZE; j++) {
+                board[i][j] = tiles[i][j];
+                if (board[i][j] == 0) {
+                    numFreeTiles++;
+                }
+            }
+        }
+    }
+
     /** Constructor: initializes <tt> size </tt> x <tt> size </tt> board with <tt> f </tt> freeTiles and score <tt> s
      * </tt>. */
     private Board(int size, int f, int s) {
@@ -45,14 +81,17 @@ public class Board {
 
     /** Generates a new tile randomly onto a free square on the board. Does nothing if the board is filled. */
     private void generateNewTile() {
-        int index = (int)(Math.random() * numFreeTiles);
+        if (numFreeTiles == 0) {
+            return;
+        }
+        int index = spawner.nextSquare(numFreeTiles);
         numFreeTiles--;
 
         for (int i = 0; i < BOARD_SIZE; i++) {
             for (int j = 0; j < BOARD_SIZE; j++) {
                 if (board[i][j] == 0) {
                     if (index == 0) { // new tile location
-                        board[i][j] = (Math.random() <= 0.9) ? 2 : 4; // 0.9 probability to set new tile to 2
+                        board[i][j] = 1 << spawner.nextExponent(); // a 2 or a 4, as the spawner draws it
                         return;
                     }
                     else {
@@ -63,8 +102,29 @@ public class Board {
         }
     }
 
+    /**
+     * Calculates the board after shifting in direction <tt> dir </tt> using the precomputed tables of <tt> BitBoard
+     * </tt>. Returns null if the shift leaves the board unchanged. Only valid if <tt> BitBoard.fits(board) </tt>.
+     */
+    private Board shiftPacked(char dir) {
+        long bits = BitBoard.pack(board);
+        long next = BitBoard.move(bits, dir);
+        if (next == bits) { // no changes made
+            return null;
+        }
+
+        Board ret = new Board(BOARD_SIZE, BitBoard.countEmpty(next), score + BitBoard.moveScore(bits, dir));
+        BitBoard.unpack(next, ret.board);
+        return ret;
+    }
+
     /** Calculates leftBoard. Returns true if shifting leftwards changes the board. */
     private boolean shiftLeft() {
+        if (BitBoard.fits(board)) { // table lookups instead of sliding tile by tile
+            leftBoard = shiftPacked('L');
+            return leftBoard != null;
+        }
+
         boolean ret = false; // true if move is valid
         leftBoard = new Board(BOARD_SIZE, numFreeTiles, score);
 
@@ -105,6 +165,11 @@ public class Board {
 
     /** Calculates rightBoard. Returns true if shifting rightwards changes the board. */
     private boolean shiftRight() {
+        if (BitBoard.fits(board)) { // table lookups instead of sliding tile by tile
+            rightBoard = shiftPacked('R');
+            return rightBoard != null;
+        }
+
         boolean ret = false; // true if move is valid
         rightBoard = new Board(BOARD_SIZE, numFreeTiles, score);
 
@@ -144,6 +209,11 @@ public class Board {
 
     /** Calculates downBoard. Returns true if shifting downwards changes the board. */
     private boolean shiftDown() {
+        if (BitBoard.fits(board)) { // table lookups instead of sliding tile by tile
+            downBoard = shiftPacked('D');
+            return downBoard != null;
+        }
+
         boolean ret = false; // true if move is valid
         downBoard = new Board(BOARD_SIZE, numFreeTiles, score);
 
@@ -183,6 +253,11 @@ public class Board {
 
     /** Calculates upBoard. Returns true if shifting upwards changes the board. */
     private boolean shiftUp() {
+        if (BitBoard.fits(board)) { // table lookups instead of sliding tile by tile
+            upBoard = shiftPacked('U');
+            return upBoard != null;
+        }
+
         boolean ret = false; // true if move is valid
         upBoard = new Board(BOARD_SIZE, numFreeTiles, score);
 
@@ -220,7 +295,11 @@ public class Board {
         return ret;
     }
 
-    /** Returns true if there are no valid moves remaining. */
+    /**
+     * Returns true if there are no valid moves remaining. Side-effect: calculates <tt> leftBoard </tt>, <tt>
+     * rightBoard </tt>, <tt> downBoard </tt> and <tt> upBoard </tt>. Use <tt> isGameOver </tt> if the successors are
+     * not needed.
+     */
     public boolean checkGameOver() {
         boolean l = shiftLeft();
         boolean r = shiftRight();
@@ -229,37 +308,139 @@ public class Board {
         return !l && !r && !d && !u;
     }
 
+    /** Returns true if there are no valid moves remaining: no square is empty and no two neighbours are equal. */
+    public boolean isGameOver() {
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            for (int j = 0; j < BOARD_SIZE; j++) {
+                if (board[i][j] == 0) {
+                    return false;
+                }
+                if (j+1 < BOARD_SIZE && board[i][j] == board[i][j+1]) {
+                    return false;
+                }
+                if (i+1 < BOARD_SIZE && board[i][j] == board[i+1][j]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if shifting in direction <tt> dir </tt> ('L', 'R', 'D' or 'U') changes the board. A shift is legal
+     * exactly when some tile can slide into an empty square or merge with its neighbour in that direction.
+     */
+    public boolean canShift(char dir) {
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            for (int j = 0; j < BOARD_SIZE-1; j++) {
+                int from, to; // tile that moves and the square it moves to
+                if (dir == 'L') {
+                    from = board[i][j+1];
+                    to = board[i][j];
+                }
+                else if (dir == 'R') {
+                    from = board[i][j];
+                    to = board[i][j+1];
+                }
+                else if (dir == 'U') {
+                    from = board[j+1][i];
+                    to = board[j][i];
+                }
+                else if (dir == 'D') {
+                    from = board[j][i];
+                    to = board[j+1][i];
+                }
+                else {
+                    return false;
+                }
+
+                if (from != 0 && (to == 0 || to == from)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the board after shifting in direction <tt> dir </tt> into <tt> dest </tt>, which must have the same
+     * size and may be this board itself. Returns false and leaves <tt> dest </tt> unchanged if the shift does not
+     * change the board. Does not allocate unless a tile is too large for <tt> BitBoard </tt>.
+     */
+    public boolean shiftInto(char dir, Board dest) {
+        if (BitBoard.fits(board)) {
+            long bits = BitBoard.pack(board);
+            long next = BitBoard.move(bits, dir);
+            if (next == bits) { // no changes made
+                return false;
+            }
+
+            dest.score = score + BitBoard.moveScore(bits, dir);
+            dest.numFreeTiles = BitBoard.countEmpty(next);
+            BitBoard.unpack(next, dest.board);
+            return true;
+        }
+
+        Board next = successor(dir);
+        if (next == null) {
+            return false;
+        }
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            System.arraycopy(next.board[i], 0, dest.board[i], 0, BOARD_SIZE);
+        }
+        dest.score = next.score;
+        dest.numFreeTiles = next.numFreeTiles;
+        return true;
+    }
+
+    /**
+     * Returns the board after shifting in direction <tt> dir </tt>, or null if the shift does not change the board.
+     * Only the requested successor is calculated, and its field (e.g. <tt> leftBoard </tt>) is updated.
+     */
+    public Board successor(char dir) {
+        if (dir == 'L') {
+            shiftLeft();
+            return leftBoard;
+        }
+        else if (dir == 'R') {
+            shiftRight();
+            return rightBoard;
+        }
+        else if (dir == 'D') {
+            shiftDown();
+            return downBoard;
+        }
+        else if (dir == 'U') {
+            shiftUp();
+            return upBoard;
+        }
+        return null;
+    }
+
     /**
      * Alters the board based on input:
      *      <tt> input = 'L' </tt>: shiftLeft
      *      <tt> input = 'R' </tt> : shiftRight
      *      <tt> input = 'U' </tt> : shiftUp
      *      <tt> input = 'D' </tt : shiftDown
-     * Leaves board unchanged if input is not recognized.
+     * Leaves board unchanged if input is not recognized or the shift is not valid. The shift is applied in place.
      */
     public void play(char input) {
-        if (!checkGameOver()) {
-            if (input == 'L' && leftBoard != null) { // left
-                board = leftBoard.board;
-                score = leftBoard.score;
-                numFreeTiles = leftBoard.numFreeTiles;
-            }
-            else if (input == 'R' && rightBoard != null) { // right
-                board = rightBoard.board;
-                score = rightBoard.score;
-                numFreeTiles = rightBoard.numFreeTiles;
-            }
-            else if (input == 'D' && downBoard != null) { // down
-                board = downBoard.board;
-                score = downBoard.score;
-                numFreeTiles = downBoard.numFreeTiles;
-            }
-            else if (input == 'U' && upBoard != null) { // up
-                board = upBoard.board;
-                score = upBoard.score;
-                numFreeTiles = upBoard.numFreeTiles;
+        if (!isGameOver()) {
+            if (BitBoard.fits(board)) { // shift and spawn on the packed board
+                long bits = BitBoard.pack(board);
+                long next = BitBoard.move(bits, input);
+                if (next == bits) { // exit before new tile is spawned
+                    return;
+                }
+                score += BitBoard.moveScore(bits, input);
+                next = BitBoard.spawn(next, spawner.nextSquare(BitBoard.countEmpty(next)), spawner.nextExponent());
+                numFreeTiles = BitBoard.countEmpty(next);
+                BitBoard.unpack(next, board);
+                return;
             }
-            else { // exit before new tile is spawned
+
+            if (!shiftInto(input, this)) { // exit before new tile is spawned
                 return;
             }
             generateNewTile(); // spawns a new tile
@@ -269,6 +450,11 @@ public class Board {
         }
     }
 
+    /** Sets the spawner choosing the tiles spawned after each move. */
+    public void setSpawner(TileSpawner spawner) {
+        this.spawner = spawner;
+    }
+
     /** Prints the board state and the current score. */
     public void printBoard() {
         for (int i = 0; i < BOARD_SIZE; i++) {
@@ -0,0 +1,27 @@
+/**
+ * A static evaluation function for packed 2048 boards (see <tt> BitBoard </tt>). Used by <tt> MinimaxAI </tt> to score
+ * positions at the search horizon; a larger value is a better position for the player.
+ */
+public interface Evaluator {
+    /** Returns the value of the packed board <tt> board </tt> reached with game score <tt> score </tt>. */
+    public double evaluate(long board, int score);
+
+    /**
+     * Writes the values of the first <tt> n </tt> boards in <tt> boards </tt>, with scores <tt> scores </tt>, into
+     * <tt> out </tt>. Evaluators which are faster on many boards at once, such as neural networks, should override
+     * this.
+     */
+    public default void evaluate(long[] boards, int[] scores, int n, double[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = evaluate(boards[i], scores[i]);
+        }
+    }
+
+    /**
+     * Returns true if every reflection and rotation of a board has the same value, so that searches may cache values
+     * under <tt> BitBoard.canonical </tt> keys. False unless overridden.
+     */
+    public default boolean isSymmetric() {
+        return false;
+    }
+}
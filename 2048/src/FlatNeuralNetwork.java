@@ -0,0 +1,431 @@
+import java.util.*;
+import java.io.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A forward pass fully-connected neural network with the same behaviour as <tt> NeuralNetwork </tt>, storing each
+ * layer as a contiguous weight matrix and bias vector instead of maps between neurons. <tt> weights[i] </tt> connects
+ * layer <tt> i </tt> to layer <tt> i+1 </tt>, with the weight from neuron <tt> j </tt> to neuron <tt> k </tt> at index
+ * <tt> j * arch[i+1] + k </tt>; this is also the order of the weight file. Forward and backward propagation work in
+ * preallocated buffers and do not allocate. Forward propagation never writes to the network itself: intermediate
+ * values go to a <tt> Scratch </tt>, either supplied by the caller or kept per thread, so any number of threads may
+ * evaluate the same network at once as long as no thread is training it.
+ */
+public class FlatNeuralNetwork {
+    /** Number of neurons in each layer. */
+    int[] arch;
+    /** Weight matrix between each pair of consecutive layers. */
+    double[][] weights;
+    /**
+     * Bias of each neuron in layers 1 onwards: the bias value times its weight. As in <tt> NeuralNetwork </tt>,
+     * biases keep their initial value during training.
+     */
+    double[][] biases;
+    /** Activation function of all neurons within the network. */
+    ActivationFunction f = new ReLU();
+
+    /** Buffers of <tt> backProp </tt>. */
+    private Scratch scratch;
+    /** Buffers of forward propagation calls which do not supply their own, one per thread. */
+    private final ThreadLocal<Scratch> threadScratch = ThreadLocal.withInitial(this::newScratch);
+
+    /**
+     * Initializes the neural network using pre-calculated weights from <tt> pathName </tt>, in the format written by
+     * <tt> NeuralNetworkTraining </tt>. Use <tt> f </tt> as activation function.
+     */
+    public FlatNeuralNetwork(String pathName, ActivationFunction f) {
+        this.f = f;
+        try {
+            // read file
+            FileReader fr = new FileReader(pathName);
+            BufferedReader br = new BufferedReader(fr);
+
+            // read architecture
+            String[] s = br.readLine().trim().split("\\s+");
+            arch = new int[s.length];
+            for (int i = 0; i < s.length; i++) {
+                arch[i] = Integer.parseInt(s[i]);
+            }
+            allocate();
+
+            // initialize weights
+            for (int i = 0; i < weights.length; i++) {
+                for (int j = 0; j < weights[i].length; j++) {
+                    weights[i][j] = Double.parseDouble(br.readLine());
+                }
+            }
+            br.close();
+        }
+        catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Initializes the neural network using <tt> arch </tt> to specify how many neurons to use in each layer. Uses
+     * <tt> f </tt> as activation function. Adds bias term of <tt> dummyValue </tt> connected to each neuron.
+     */
+    public FlatNeuralNetwork(int[] arch, int dummyValue, ActivationFunction f) {
+        this.f = f;
+        this.arch = arch.clone();
+        allocate();
+
+        for (int i = 1; i < arch.length; i++) {
+            for (int k = 0; k < arch[i]; k++) {
+                biases[i-1][k] = dummyValue * (Math.random()-0.5); // connect with bias
+                for (int j = 0; j < arch[i-1]; j++) { // connect with all neurons in previous layer
+                    weights[i-1][j * arch[i] + k] = Math.random()-0.5; // between -0.5 and 0.5 chosen uniformly
+                }
+            }
+        }
+    }
+
+    /** Initializes a network with architecture <tt> arch </tt> and all weights zero. Used by <tt> NetworkFile </tt>. */
+    FlatNeuralNetwork(int[] arch, ActivationFunction f) {
+        this.f = f;
+        this.arch = arch.clone();
+        allocate();
+    }
+
+    /** Allocates the weights, biases and propagation buffers for <tt> arch </tt>. */
+    private void allocate() {
+        weights = new double[arch.length-1][];
+        biases = new double[arch.length-1][];
+        for (int i = 1; i < arch.length; i++) {
+            weights[i-1] = new double[arch[i-1] * arch[i]];
+            biases[i-1] = new double[arch[i]];
+        }
+        scratch = new Scratch(arch);
+    }
+
+    /** Returns new buffers for propagating inputs through this network. */
+    public Scratch newScratch() {
+        return new Scratch(arch);
+    }
+
+    /**
+     * Per-thread buffers for propagating inputs: the un-activated and activated value and the error gradient of each
+     * neuron, the gradients of the weights accumulated over a mini-batch and the activations of a batch of inputs.
+     * Must not be used by two threads at once.
+     */
+    public static class Scratch {
+        final double[][] vals;
+        final double[][] outputs;
+        final double[][] deltas;
+        /** Accumulated weight gradients; only allocated for mini-batch training. */
+        double[][] grads;
+        /** Activations of the current batch, one buffer per layer; grown as needed. */
+        double[][] batchVals;
+
+        Scratch(int[] arch) {
+            vals = new double[arch.length][];
+            outputs = new double[arch.length][];
+            deltas = new double[arch.length][];
+            for (int i = 0; i < arch.length; i++) {
+                vals[i] = new double[arch[i]];
+                outputs[i] = new double[arch[i]];
+                deltas[i] = new double[arch[i]];
+            }
+        }
+
+        void allocateGrads(int[] arch) {
+            grads = new double[arch.length-1][];
+            for (int i = 1; i < arch.length; i++) {
+                grads[i-1] = new double[arch[i-1] * arch[i]];
+            }
+        }
+    }
+
+    /**
+     * Calculates the output of <tt> x </tt> when inputted into the neural network, using buffers of the calling
+     * thread. Safe to call from several threads at once; threads which are created often, such as virtual threads,
+     * should supply their own <tt> Scratch </tt> instead.
+     */
+    public double forwardProp(double[] x) {
+        return forwardProp(x, threadScratch.get());
+    }
+
+    /**
+     * Calculates the output of <tt> x </tt>, keeping the values of all neurons in <tt> s </tt>, which must come from
+     * <tt> newScratch </tt>. Does not alter the network.
+     */
+    public double forwardProp(double[] x, Scratch s) {
+        return forwardProp(x, 0, s);
+    }
+
+    /** Same as <tt> forwardProp(x, s) </tt> for the input starting at index <tt> offset </tt> of <tt> x </tt>. */
+    private double forwardProp(double[] x, int offset, Scratch s) {
+        System.arraycopy(x, offset, s.vals[0], 0, arch[0]); // input layer
+        System.arraycopy(x, offset, s.outputs[0], 0, arch[0]);
+
+        for (int i = 1; i < arch.length; i++) { // propagate forward
+            double[] in = s.outputs[i-1];
+            double[] val = s.vals[i];
+            double[] w = weights[i-1];
+            int size = arch[i];
+
+            System.arraycopy(biases[i-1], 0, val, 0, size);
+            for (int j = 0; j < in.length; j++) {
+                double a = in[j];
+                if (a == 0) {
+                    continue;
+                }
+                int row = j * size;
+                for (int k = 0; k < size; k++) {
+                    val[k] += a * w[row + k];
+                }
+            }
+
+            double[] out = s.outputs[i];
+            for (int k = 0; k < size; k++) {
+                out[k] = f.activation(val[k]);
+            }
+        }
+
+        return s.vals[arch.length-1][0]; // value at output node
+    }
+
+    /**
+     * Calculates the outputs of the <tt> n </tt> inputs stored one after another in <tt> x </tt> and writes them into
+     * <tt> out </tt>. Each layer is computed for the whole batch as one matrix-matrix product. Uses buffers of the
+     * calling thread, like <tt> forwardProp(x) </tt>.
+     */
+    public void forwardProp(double[] x, int n, double[] out) {
+        forwardProp(x, n, out, threadScratch.get());
+    }
+
+    /** Same as <tt> forwardProp(x, n, out) </tt>, keeping the activations in <tt> s </tt>. */
+    public void forwardProp(double[] x, int n, double[] out, Scratch s) {
+        if (s.batchVals == null || s.batchVals[0].length < n * arch[0]) {
+            s.batchVals = new double[arch.length][];
+            for (int i = 0; i < arch.length; i++) {
+                s.batchVals[i] = new double[n * arch[i]];
+            }
+        }
+        double[][] batchVals = s.batchVals;
+
+        double[] in = x;
+        for (int i = 1; i < arch.length; i++) { // propagate forward
+            int inSize = arch[i-1];
+            int outSize = arch[i];
+            double[] w = weights[i-1];
+            double[] val = batchVals[i];
+
+            for (int b = 0; b < n; b++) { // val = in * w + bias
+                int row = b * outSize;
+                System.arraycopy(biases[i-1], 0, val, row, outSize);
+                for (int j = 0; j < inSize; j++) {
+                    double a = in[b * inSize + j];
+                    if (a == 0) {
+                        continue;
+                    }
+                    int wRow = j * outSize;
+                    for (int k = 0; k < outSize; k++) {
+                        val[row + k] += a * w[wRow + k];
+                    }
+                }
+            }
+
+            if (i == arch.length-1) { // output layer returns its value before activation
+                for (int b = 0; b < n; b++) {
+                    out[b] = val[b * outSize];
+                }
+            }
+            else {
+                for (int k = 0; k < n * outSize; k++) {
+                    val[k] = f.activation(val[k]);
+                }
+            }
+            in = val;
+        }
+    }
+
+    /**
+     * Gradient descent algorithm using back-propagation to minimize squared error of training data <tt> x </tt>.
+     * Executes <tt> epoch </tt> number of updates and scales each update by <tt> lr </tt>.
+     */
+    public void backProp(List<double[]> x, List<Double> expected, int epoch, double lr) {
+        while (epoch > 0) {
+            for (int i = 0; i < x.size(); i++) {
+                double output = forwardProp(x.get(i), scratch); // output of neural network
+                gradients(output, expected.get(i), scratch);
+                updateWeights(lr); // update
+            }
+
+            System.out.println(epoch); // used to keep track of progress when running
+            epoch--;
+        }
+    }
+
+    /**
+     * Mini-batch gradient descent: like <tt> backProp </tt>, but each update uses the average gradient of <tt>
+     * batchSize </tt> consecutive samples. The samples of a batch are split between <tt> threads </tt> threads, each
+     * accumulating gradients in its own buffers, which are summed before the update. With a batch size of 1 this is
+     * the same as <tt> backProp </tt>.
+     */
+    public void trainMiniBatch(List<double[]> x, List<Double> expected, int epoch, double lr, int batchSize,
+                               int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Scratch[] scratches = new Scratch[threads];
+        for (int t = 0; t < threads; t++) {
+            scratches[t] = new Scratch(arch);
+            scratches[t].allocateGrads(arch);
+        }
+
+        try {
+            while (epoch > 0) {
+                for (int start = 0; start < x.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, x.size());
+                    List<Callable<Void>> tasks = new ArrayList<>(threads);
+
+                    for (int t = 0; t < threads; t++) { // split batch into contiguous slices
+                        Scratch s = scratches[t];
+                        int from = start + (end-start) * t / threads;
+                        int to = start + (end-start) * (t+1) / threads;
+                        tasks.add(() -> {
+                            for (double[] g : s.grads) {
+                                Arrays.fill(g, 0);
+                            }
+                            for (int i = from; i < to; i++) {
+                                double output = forwardProp(x.get(i), s);
+                                gradients(output, expected.get(i), s);
+                                accumulate(s);
+                            }
+                            return null;
+                        });
+                    }
+                    pool.invokeAll(tasks);
+
+                    applyGradients(scratches, lr / (end-start)); // reduce
+                }
+
+                System.out.println(epoch); // used to keep track of progress when running
+                epoch--;
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Performs one mini-batch update from the <tt> n </tt> inputs stored one after another in <tt> x </tt> and their
+     * expected outputs <tt> y </tt>, using the average gradient of the batch scaled by <tt> lr </tt>. Meant for
+     * training from a stream of batches, such as <tt> GameDataset </tt>. Uses the buffers of <tt> backProp </tt>.
+     */
+    public void trainBatch(double[] x, double[] y, int n, double lr) {
+        if (scratch.grads == null) {
+            scratch.allocateGrads(arch);
+        }
+        for (double[] g : scratch.grads) {
+            Arrays.fill(g, 0);
+        }
+        for (int b = 0; b < n; b++) {
+            double output = forwardProp(x, b * arch[0], scratch);
+            gradients(output, y[b], scratch);
+            accumulate(scratch);
+        }
+        applyGradients(new Scratch[]{scratch}, lr / n);
+    }
+
+    /** Calculates the error gradient of every neuron in <tt> s </tt> after a forward propagation. */
+    private void gradients(double output, double expected, Scratch s) {
+        lastLayerGrad(output, expected, s); // calculate delta of output layer
+
+        for (int j = arch.length-2; j > 0; j--) { // propagate backwards
+            hiddenLayerGrad(j, s);
+        }
+    }
+
+    private void lastLayerGrad(double output, double expected, Scratch s) {
+        int last = arch.length-1;
+        for (int k = 0; k < arch[last]; k++) {
+            s.deltas[last][k] = f.derivative(s.vals[last][k]) * (expected-output);
+        }
+    }
+
+    private void hiddenLayerGrad(int j, Scratch s) {
+        double[] w = weights[j];
+        double[] next = s.deltas[j+1];
+        int size = arch[j+1];
+
+        for (int n = 0; n < arch[j]; n++) {
+            double tmp = 0;
+            int row = n * size;
+            for (int m = 0; m < size; m++) {
+                tmp += next[m] * w[row + m];
+            }
+
+            s.deltas[j][n] = f.derivative(s.vals[j][n]) * tmp;
+        }
+    }
+
+    private void updateWeights(double lr) {
+        for (int i = 0; i < arch.length-1; i++) {
+            double[] w = weights[i];
+            double[] in = scratch.outputs[i];
+            double[] delta = scratch.deltas[i+1];
+            int size = arch[i+1];
+
+            for (int n = 0; n < arch[i]; n++) {
+                double scale = in[n] * lr;
+                int row = n * size;
+                for (int m = 0; m < size; m++) {
+                    w[row + m] += scale * delta[m];
+                }
+            }
+        }
+    }
+
+    /** Adds the weight gradients of the last propagation in <tt> s </tt> to its accumulated gradients. */
+    private void accumulate(Scratch s) {
+        for (int i = 0; i < arch.length-1; i++) {
+            double[] g = s.grads[i];
+            double[] in = s.outputs[i];
+            double[] delta = s.deltas[i+1];
+            int size = arch[i+1];
+
+            for (int n = 0; n < arch[i]; n++) {
+                double a = in[n];
+                int row = n * size;
+                for (int m = 0; m < size; m++) {
+                    g[row + m] += a * delta[m];
+                }
+            }
+        }
+    }
+
+    /** Adds the accumulated gradients of every scratch in <tt> scratches </tt>, scaled by <tt> lr </tt>. */
+    private void applyGradients(Scratch[] scratches, double lr) {
+        for (int i = 0; i < weights.length; i++) {
+            double[] w = weights[i];
+            for (Scratch s : scratches) {
+                double[] g = s.grads[i];
+                for (int k = 0; k < w.length; k++) {
+                    w[k] += lr * g[k];
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int[] arch = new int[]{2,2,2,1}; // testing on XOR function
+        FlatNeuralNetwork net = new FlatNeuralNetwork(arch, 1, new Logistic());
+        List<double[]> x = new ArrayList<>();
+        x.add(new double[]{0,0});
+        x.add(new double[]{1,0});
+        x.add(new double[]{0,1});
+        x.add(new double[]{1,1});
+        List<Double> y = new ArrayList<>();
+        y.add(0.0);
+        y.add(1.0);
+        y.add(1.0);
+        y.add(0.0);
+        net.backProp(x,y,10000, 1.5);
+
+        for (double[] d : x) {
+            System.out.println(net.forwardProp(d));
+        }
+    }
+}
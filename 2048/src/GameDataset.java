@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams training data from a file of game records (text or binary, see <tt> GameRecordReader </tt>) in batches of
+ * primitive arrays, so datasets need not fit in memory. Records are split between a training and a test set by a hash
+ * of their position in the file, so the split is the same on every pass. A pass reads the file on a background
+ * thread, shuffles records within a bounded buffer and keeps a few batches ready ahead of the consumer.
+ */
+public class GameDataset {
+    /** Which records of the file a pass returns. */
+    public enum Subset { TRAIN, TEST, ALL }
+
+    /**
+     * A batch of <tt> n </tt> records. Inputs are the 16 tile values of each board, stored one board after another in
+     * <tt> x </tt>, in the order used by <tt> NeuralNetworkTraining </tt>.
+     */
+    public static class Batch {
+        public int n;
+        public final double[] x;
+        public final long[] boards;
+        public final int[] scores;
+        public final int[] movesLeft;
+
+        Batch(int capacity) {
+            x = new double[capacity * 16];
+            boards = new long[capacity];
+            scores = new int[capacity];
+            movesLeft = new int[capacity];
+        }
+
+        void add(GameRecord r) {
+            boards[n] = r.board;
+            scores[n] = r.score;
+            movesLeft[n] = r.movesLeft;
+            for (int k = 0; k < 16; k++) {
+                x[n * 16 + k] = BitBoard.value(r.board, k / 4, k % 4);
+            }
+            n++;
+        }
+    }
+
+    private final String pathName;
+    /** Fraction of records in the test set. */
+    private final double testFraction;
+    /** Seed of the train/test split. */
+    private final long splitSeed;
+
+    /**
+     * Initializes a dataset over the records at <tt> pathName </tt>, putting about <tt> testFraction </tt> of them in
+     * the test set. Datasets with the same <tt> splitSeed </tt> split the same file the same way.
+     */
+    public GameDataset(String pathName, double testFraction, long splitSeed) {
+        this.pathName = pathName;
+        this.testFraction = testFraction;
+        this.splitSeed = splitSeed;
+    }
+
+    /** Returns true if record <tt> index </tt> of the file belongs to the test set. */
+    boolean isTest(long index) {
+        long z = splitSeed + (index + 1) * 0x9E3779B97F4A7C15L; // SplitMix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53 < testFraction;
+    }
+
+    /**
+     * Starts a pass over the records of <tt> subset </tt> in batches of <tt> batchSize </tt>. Records are shuffled
+     * within a buffer of <tt> shuffleBuffer </tt> records using <tt> shuffleSeed </tt>; a buffer of 1 keeps the file
+     * order. At most <tt> prefetch </tt> batches are read ahead. Throws <tt> IOException </tt> if the file cannot be
+     * opened.
+     */
+    public Pass open(Subset subset, int batchSize, int shuffleBuffer, int prefetch, long shuffleSeed)
+            throws IOException {
+        return new Pass(subset, batchSize, Math.max(1, shuffleBuffer), Math.max(1, prefetch), shuffleSeed);
+    }
+
+    /**
+     * One pass over a subset of the records. Batches returned by <tt> next </tt> are reused: a batch is only valid
+     * until the following call to <tt> next </tt>.
+     */
+    public class Pass implements AutoCloseable {
+        /** Marks the end of the pass in <tt> ready </tt>. */
+        private final Batch end = new Batch(0);
+        /** Batches filled by the reader thread. */
+        private final BlockingQueue<Batch> ready;
+        /** Batches the consumer is done with. */
+        private final BlockingQueue<Batch> free;
+        private final GameRecordReader reader;
+        private final Thread thread;
+        /** Batch last returned by <tt> next </tt>; recycled by the following call. */
+        private Batch current;
+        /** Error of the reader thread, reported by <tt> next </tt>. */
+        private volatile Exception error;
+
+        private Pass(Subset subset, int batchSize, int shuffleBuffer, int prefetch, long shuffleSeed)
+                throws IOException {
+            ready = new ArrayBlockingQueue<>(prefetch + 1);
+            free = new ArrayBlockingQueue<>(prefetch + 2);
+            for (int i = 0; i < prefetch + 2; i++) {
+                free.add(new Batch(batchSize));
+            }
+            reader = new GameRecordReader(pathName);
+
+            thread = new Thread(() -> {
+                try {
+                    produce(subset, batchSize, shuffleBuffer, shuffleSeed);
+                }
+                catch (InterruptedException e) {
+                    return; // closed early
+                }
+                catch (Exception e) {
+                    error = e;
+                }
+                try {
+                    ready.put(end);
+                }
+                catch (InterruptedException e) {
+                    // closed early
+                }
+            }, "game-dataset-reader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /** Reads, filters and shuffles records into batches until the end of the file. */
+        private void produce(Subset subset, int batchSize, int shuffleBuffer, long shuffleSeed)
+                throws IOException, InterruptedException {
+            SplittableRandom rng = new SplittableRandom(shuffleSeed);
+            GameRecord[] buffer = new GameRecord[shuffleBuffer];
+            int size = 0;
+            Batch batch = free.take();
+            batch.n = 0;
+
+            GameRecord r = new GameRecord();
+            for (long index = 0; reader.read(r); index++) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (subset != Subset.ALL && isTest(index) != (subset == Subset.TEST)) {
+                    continue;
+                }
+                if (size < shuffleBuffer) { // fill the buffer first
+                    buffer[size++] = r;
+                    r = new GameRecord();
+                    continue;
+                }
+                int k = rng.nextInt(shuffleBuffer); // emit a random buffered record and keep the new one
+                GameRecord out = buffer[k];
+                buffer[k] = r;
+                r = out;
+                batch.add(out);
+                if (batch.n == batchSize) {
+                    ready.put(batch);
+                    batch = free.take();
+                    batch.n = 0;
+                }
+            }
+
+            for (int i = size-1; i > 0; i--) { // drain the buffer in random order
+                int k = rng.nextInt(i+1);
+                GameRecord tmp = buffer[k];
+                buffer[k] = buffer[i];
+                buffer[i] = tmp;
+            }
+            for (int i = 0; i < size; i++) {
+                batch.add(buffer[i]);
+                if (batch.n == batchSize) {
+                    ready.put(batch);
+                    batch = free.take();
+                    batch.n = 0;
+                }
+            }
+            if (batch.n > 0) {
+                ready.put(batch);
+            }
+        }
+
+        /**
+         * Returns the next batch, waiting for the reader thread if necessary, or null at the end of the pass. The last
+         * batch may hold fewer than <tt> batchSize </tt> records. Throws <tt> IOException </tt> if the file could not
+         * be read.
+         */
+        public Batch next() throws IOException {
+            if (current != null) {
+                free.add(current);
+                current = null;
+            }
+            try {
+                Batch b = ready.take();
+                if (b == end) {
+                    ready.add(end); // keep returning null
+                    if (error != null) {
+                        throw (error instanceof IOException) ? (IOException) error
+                                : new IOException("Unable to read " + pathName, error);
+                    }
+                    return null;
+                }
+                current = b;
+                return b;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading " + pathName, e);
+            }
+        }
+
+        /** Stops the reader thread and closes the file. */
+        @Override
+        public void close() throws IOException {
+            thread.interrupt();
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * A training sample recorded from a finished game: a board state from the game (packed, see <tt> BitBoard </tt>), the
+ * final score of the game and the number of moves played after that board state.
+ */
+public class GameRecord {
+    /** Recorded board state. */
+    public long board;
+    /** Final score of the game. */
+    public int score;
+    /** Number of moves from the recorded board state until the end of the game. */
+    public int movesLeft;
+
+    public GameRecord() {}
+
+    public GameRecord(long board, int score, int movesLeft) {
+        this.board = board;
+        this.score = score;
+        this.movesLeft = movesLeft;
+    }
+
+    /** Returns the record as a line of <tt> Data/Results.txt </tt>: the 16 tile values, the score and the moves. */
+    public String toText() {
+        StringBuilder sb = new StringBuilder(96);
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                sb.append(BitBoard.value(board, i, j)).append(' ');
+            }
+        }
+        return sb.append(score).append(' ').append(movesLeft).toString();
+    }
+
+    /** Parses a line of <tt> Data/Results.txt </tt>. Tiles must be at most 32768. */
+    public static GameRecord parse(String line) {
+        String[] s = line.trim().split("\\s+");
+        int[][] tiles = new int[4][4];
+        for (int k = 0; k < 16; k++) {
+            tiles[k / 4][k % 4] = Integer.parseInt(s[k]);
+        }
+        return new GameRecord(BitBoard.pack(tiles), Integer.parseInt(s[16]), Integer.parseInt(s[17]));
+    }
+}
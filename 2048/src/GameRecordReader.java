@@ -0,0 +1,162 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streams <tt> GameRecord </tt>s from a file written by <tt> GameRecordWriter </tt> or in the text format of <tt>
+ * Data/Results.txt </tt>; the format is detected from the first bytes of the file. Only one block of records is held
+ * in memory at a time, so files of any size can be read.
+ */
+public class GameRecordReader implements Closeable {
+    private final DataInputStream in;
+    /** Reader of text files; null for binary files. */
+    private final BufferedReader text;
+    private final boolean compressed;
+    /** Decoded records not yet returned. */
+    private final ByteBuffer block;
+    private final Inflater inflater;
+    private byte[] deflated;
+
+    /** Opens the file at <tt> pathName </tt>. Throws <tt> IOException </tt> if it cannot be read. */
+    public GameRecordReader(String pathName) throws IOException {
+        InputStream file = new BufferedInputStream(new FileInputStream(pathName), 1 << 16);
+        file.mark(GameRecordWriter.HEADER_BYTES);
+        byte[] header = file.readNBytes(GameRecordWriter.HEADER_BYTES);
+        ByteBuffer h = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.length < GameRecordWriter.HEADER_BYTES || h.getInt() != GameRecordWriter.MAGIC) {
+            file.reset();
+            in = null;
+            text = new BufferedReader(new InputStreamReader(file, StandardCharsets.UTF_8));
+            compressed = false;
+            block = null;
+            inflater = null;
+            return;
+        }
+
+        int version = h.getInt();
+        if (version != GameRecordWriter.VERSION) {
+            file.close();
+            throw new IOException(pathName + " has unsupported version " + version);
+        }
+        compressed = (h.getInt() & GameRecordWriter.COMPRESSED) != 0;
+        int blockRecords = compressed ? h.getInt() : 256;
+
+        in = new DataInputStream(file);
+        text = null;
+        block = ByteBuffer.allocate(blockRecords * GameRecordWriter.RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        block.limit(0);
+        inflater = compressed ? new Inflater() : null;
+        deflated = compressed ? new byte[block.capacity()] : null;
+    }
+
+    /** Returns true if the file is in the binary format. */
+    public boolean isBinary() {
+        return text == null;
+    }
+
+    /**
+     * Reads the next record into <tt> dest </tt>. Returns false at the end of the file. Throws <tt> IOException </tt>
+     * if the file cannot be read or is malformed.
+     */
+    public boolean read(GameRecord dest) throws IOException {
+        if (text != null) {
+            String line = text.readLine();
+            while (line != null && line.isBlank()) {
+                line = text.readLine();
+            }
+            if (line == null) {
+                return false;
+            }
+            GameRecord r = GameRecord.parse(line);
+            dest.board = r.board;
+            dest.score = r.score;
+            dest.movesLeft = r.movesLeft;
+            return true;
+        }
+
+        if (!block.hasRemaining() && !fill()) {
+            return false;
+        }
+        dest.board = block.getLong();
+        dest.score = block.getInt();
+        dest.movesLeft = block.getInt();
+        return true;
+    }
+
+    /** Returns the next record, or null at the end of the file. */
+    public GameRecord next() throws IOException {
+        GameRecord r = new GameRecord();
+        return read(r) ? r : null;
+    }
+
+    /** Decodes the next block of records. Returns false at the end of the file. */
+    private boolean fill() throws IOException {
+        block.clear();
+        if (!compressed) {
+            int n = in.readNBytes(block.array(), 0, block.capacity());
+            if (n % GameRecordWriter.RECORD_BYTES != 0) {
+                throw new IOException("Truncated record");
+            }
+            block.limit(n);
+            return n > 0;
+        }
+
+        byte[] h = in.readNBytes(8);
+        if (h.length == 0) {
+            block.limit(0);
+            return false;
+        }
+        if (h.length < 8) {
+            throw new IOException("Truncated block header");
+        }
+        ByteBuffer hb = ByteBuffer.wrap(h).order(ByteOrder.LITTLE_ENDIAN);
+        int length = hb.getInt();
+        int count = hb.getInt();
+        if (length < 0 || count < 0 || count * GameRecordWriter.RECORD_BYTES > block.capacity()) {
+            throw new IOException("Malformed block header");
+        }
+        if (length > deflated.length) {
+            deflated = new byte[length];
+        }
+        in.readFully(deflated, 0, length);
+
+        inflater.reset();
+        inflater.setInput(deflated, 0, length);
+        int expected = count * GameRecordWriter.RECORD_BYTES;
+        try {
+            int n = 0;
+            while (n < expected && !inflater.finished()) {
+                int k = inflater.inflate(block.array(), n, expected - n);
+                if (k == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != expected) {
+                throw new IOException("Truncated block");
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Malformed block", e);
+        }
+        block.limit(expected);
+        return expected > 0 || fill();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (text != null) {
+            text.close();
+        }
+        else {
+            in.close();
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -1,179 +1,966 @@
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** An AI which plays 2048. */
 public class MinimaxAI {
     /** Board which AI plays on. */
     public Board b;
 
+    /** Value of a lost position in expectimax search, below any reachable evaluation. */
+    private static final double LOSS = -1e9;
+    /** Deepest search attempted by iterative deepening. */
+    static final int MAX_DEPTH = 64;
+
     private int DEPTH = 8;
-    private NeuralNetwork nn = new NeuralNetwork("Data/NeuralNetwork1", new Logistic());
+    /** Weights of the network used by <tt> useNeuralNetwork </tt>, shared through <tt> ModelRegistry </tt>. */
+    private static final String NETWORK = "Data/NeuralNetwork1";
+    /** Network used for the current move; null until the neural network evaluator is selected. */
+    private FlatNeuralNetwork nn = null;
+
+    /** Evaluation function applied at the search horizon. */
+    private Evaluator evaluator = new HeuristicEvaluator();
+    /** True to cache positions of symmetric evaluators under their canonical form. */
+    private boolean symmetricCaching = true;
+    /** True to cache positions under their canonical form: enabled and the evaluator is symmetric. */
+    private boolean canonicalKeys = true;
+    /** True to model tile spawns as chance nodes (expectimax) instead of an adversary (minimax). */
+    private boolean expectimax = false;
+    /** Cache of searched positions; null if caching is disabled. */
+    private TranspositionTable table = null;
+    /** Pool running the parallel search; null to search on the calling thread. */
+    private ForkJoinPool pool = null;
+    /** Chance nodes with at least this many plies left are split into parallel tasks; 0 to never split. */
+    private int splitDepth = 0;
+    /** Orders moves and spawns in minimax search; null to try them in board order. */
+    private MoveOrdering ordering = new MoveOrdering();
+    /** Half-width of the aspiration window of iterative deepening in minimax search; 0 to always use a full window. */
+    private double aspiration = 0;
+    /** Value of the best root move found by the last search. */
+    private double rootValue = 0;
+    /** Expectimax spawns reached with a smaller probability are not searched; 0 to search every spawn. */
+    private double minProb = 0;
+    /** True to choose the depth of each move from the board, up to <tt> DEPTH </tt>. */
+    private boolean adaptiveDepth = false;
+    /** Statistics of the search; null if disabled. */
+    private SearchStats stats = null;
+    /** Depth of the search in progress, to convert remaining depth into plies from the root. */
+    private int searchDepth = 0;
+    /** Expectimax subtrees with this many plies left have their leaves evaluated as one batch; 0 to never batch. */
+    private int batchPlies = 0;
+    /** Leaves of the subtree being batched, one buffer per searching thread. */
+    private final ThreadLocal<LeafBatch> batches = ThreadLocal.withInitial(LeafBatch::new);
+    /**
+     * Order in which <tt> maximin </tt> tries the empty squares, one array per ply and per searching thread. Fetched
+     * once per search or task and passed down the tree.
+     */
+    private final ThreadLocal<int[][]> spawnOrders = ThreadLocal.withInitial(() -> new int[MAX_DEPTH+1][16]);
+    /** Time allowed per move in nanoseconds; 0 to always search <tt> DEPTH </tt> plies. */
+    private long budget = 0;
+    /** <tt> System.nanoTime() </tt> at which the current search is abandoned; 0 if the search is not timed. */
+    private long deadline = 0;
+    /** Depth of the deepest search completed for the last move. */
+    private int completedDepth = 0;
 
     /** Default constructor: plays game on 4x4 board. */
     public MinimaxAI() {
         b = new Board();
     }
 
-    /** Evaluation function using neural network. */
-    private double evalNN(Board b) {
-        double[] x = new double[b.BOARD_SIZE * b.BOARD_SIZE];
-        int counter = 0;
-        for(int i = 0; i < b.BOARD_SIZE; i++) {
-            for (int j = 0; j < b.BOARD_SIZE; j++) {
-                x[counter] = b.board[i][j];
-                counter++;
-            }
+    /** Constructor: plays game on <tt> b </tt>. */
+    public MinimaxAI(Board b) {
+        this.b = b;
+    }
+
+    /**
+     * Sets the number of plies searched per move, at most <tt> MAX_DEPTH </tt>. Each move and each tile spawn counts
+     * as one ply.
+     */
+    public void setDepth(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("depth must be at most " + MAX_DEPTH + ": " + depth);
         }
+        DEPTH = depth;
+    }
 
-        return nn.forwardProp(x);
+    /**
+     * Searches each move by iterative deepening within <tt> millis </tt> milliseconds of wall-clock time instead of
+     * to a fixed depth. The move chosen by the deepest search which finished in time is played. 0 restores the fixed
+     * depth set by <tt> setDepth </tt>.
+     */
+    public void setTimeBudget(long millis) {
+        budget = millis * 1_000_000L;
     }
 
-    /** Evaluation function using hand-crafted logic. */
-    private double eval(Board b) {
-        int adjScore = 0;
+    /** Returns the depth of the deepest search completed for the last move. */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Chooses between minimax search, which assumes the worst tile placement and only places 2s, and expectimax
+     * search, which averages over every placement of a 2 (probability 0.9) or a 4 (probability 0.1).
+     */
+    public void setExpectimax(boolean expectimax) {
+        this.expectimax = expectimax;
+        clearTable();
+    }
+
+    /** Evaluates positions with the neural network if <tt> useNN </tt>, otherwise with the hand-crafted logic. */
+    public void useNeuralNetwork(boolean useNN) {
+        if (useNN) {
+            nn = ModelRegistry.get(NETWORK, new Logistic());
+        }
+        setEvaluator(useNN ? new NetworkEvaluator() : new HeuristicEvaluator());
+    }
+
+    /** Sets the evaluation function applied at the search horizon. */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        canonicalKeys = symmetricCaching && evaluator.isSymmetric();
+        clearTable();
+    }
+
+    /** Returns the evaluation function applied at the search horizon. */
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Caches search results in <tt> table </tt>, which may be shared between moves and games using the same search
+     * mode and evaluator. Pass null to disable caching.
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Caches reflections and rotations of a position in a single transposition table entry when the evaluator is
+     * symmetric (the default), which costs computing <tt> BitBoard.canonical </tt> at every cached node.
+     */
+    public void setSymmetricCaching(boolean enabled) {
+        symmetricCaching = enabled;
+        setEvaluator(evaluator);
+    }
+
+    /**
+     * Returns the key of <tt> board </tt> in the transposition table. With a symmetric evaluator all reflections and
+     * rotations of a position have the same value, so they share one entry under the canonical form.
+     */
+    private long key(long board) {
+        return canonicalKeys ? BitBoard.canonical(board) : board;
+    }
+
+    /** Removes cached values, which become invalid when the search mode or evaluator changes. */
+    private void clearTable() {
+        if (table != null) {
+            table.clear();
+        }
+    }
+
+    /**
+     * Searches the root moves in parallel on a work-stealing pool of <tt> threads </tt> threads, sharing the alpha
+     * bound between them. Searches on the calling thread if <tt> threads </tt> is 1. The evaluator must be safe to
+     * call from several threads. The hand-crafted evaluation, <tt> TableEvaluator </tt> and <tt> NTupleNetwork </tt>
+     * only read shared tables, and the neural network evaluator keeps its buffers per thread.
+     */
+    public void setThreads(int threads) {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * In parallel expectimax search, also splits chance nodes with at least <tt> depth </tt> plies left into one task
+     * per empty square. 0 only splits the root.
+     */
+    public void setSplitDepth(int depth) {
+        splitDepth = depth;
+    }
+
+    /**
+     * In expectimax search, collects all leaves of each subtree with <tt> plies </tt> plies left and evaluates them
+     * with a single call to the evaluator before backing up their values. With the neural network this turns one
+     * forward pass per leaf into one matrix-matrix product per subtree. 0 evaluates every leaf on its own.
+     */
+    public void setBatchPlies(int plies) {
+        batchPlies = plies;
+    }
+
+    /**
+     * Tries the moves of minimax search in the order of the killer and history heuristics, and tile spawns in order of
+     * the damage they do, starting with squares next to large tiles, so that cutoffs come earlier. Does not change the
+     * value of the search. On by default.
+     */
+    public void setMoveOrdering(boolean enabled) {
+        ordering = enabled ? new MoveOrdering() : null;
+    }
+
+    /**
+     * With a time budget, searches each depth of minimax search within <tt> window </tt> of the value found by the
+     * previous depth first, and only repeats the search with a full window if the value falls outside. 0 disables
+     * aspiration windows.
+     */
+    public void setAspirationWindow(double window) {
+        aspiration = window;
+    }
+
+    /**
+     * In expectimax search, stops expanding spawns once the probability of the spawns leading to a chance node drops
+     * below <tt> threshold </tt>, for example after several unlikely 4s, and evaluates the board there instead. 0
+     * searches every spawn. Values stored in the transposition table may then come from more or less pruned searches.
+     */
+    public void setProbabilityCutoff(double threshold) {
+        minProb = threshold;
+        clearTable();
+    }
+
+    /**
+     * Chooses the depth of each move from the board instead of always searching <tt> DEPTH </tt> plies: boards with
+     * more distinct tiles and fewer empty squares are searched deeper, up to <tt> DEPTH </tt>. Only used without a
+     * time budget.
+     */
+    public void setAdaptiveDepth(boolean adaptive) {
+        adaptiveDepth = adaptive;
+    }
 
-        for (int i = 0; i < b.BOARD_SIZE-1; i++) {
-            for (int j = 0; j < b.BOARD_SIZE-1; j++) {
-                int rightDiff = Math.abs(b.board[i][j]-b.board[i][j+1]);
-                int downDiff = Math.abs(b.board[i][j]-b.board[i+1][j]);
-                adjScore = adjScore + rightDiff + downDiff;
+    /**
+     * Returns the number of plies to search on <tt> board </tt> with adaptive depth: two plies (a move and a spawn) per
+     * distinct tile beyond the second, at least two moves, one move less on an open board and one more on a crowded
+     * one, at most <tt> DEPTH </tt>.
+     */
+    int adaptiveDepth(long board) {
+        int tiles = 0; // set of exponents present
+        for (long b = board; b != 0; b >>>= 4) {
+            tiles |= 1 << (b & 0xF);
+        }
+        int distinct = Integer.bitCount(tiles & ~1);
+        int empty = BitBoard.countEmpty(board);
+
+        int moves = Math.max(2, distinct - 2);
+        if (empty >= 8) {
+            moves--;
+        }
+        else if (empty <= 2) {
+            moves++;
+        }
+        return Math.max(2, Math.min(2 * moves, DEPTH));
+    }
+
+    /**
+     * Records statistics of every search in <tt> stats </tt>, which may be shared with other AIs. Pass null to stop
+     * recording.
+     */
+    public void setStats(SearchStats stats) {
+        this.stats = stats;
+    }
+
+    /** Returns the statistics recorded by this AI, or null if disabled. */
+    public SearchStats getStats() {
+        return stats;
+    }
+
+    /** Returns the number of search nodes visited while statistics were enabled, or 0 if they are disabled. */
+    public long getNodes() {
+        return (stats == null) ? 0 : stats.getNodes();
+    }
+
+    /** Counts a node with <tt> depth </tt> plies left, if statistics are enabled. */
+    private void countNode(int depth) {
+        if (stats != null) {
+            stats.node(searchDepth - depth - 1); // ply 0 holds the children of the root
+        }
+    }
+
+    /** Evaluates a leaf, counting it if statistics are enabled. */
+    private double evaluate(long board, int score) {
+        if (stats != null) {
+            stats.evaluations(1);
+        }
+        return evaluator.evaluate(board, score);
+    }
+
+    /** Sum of the differences between horizontally adjacent tile values, for every packed row. */
+    private static final int[] ROUGHNESS = new int[BitBoard.ROWS];
+
+    static {
+        for (int row = 0; row < BitBoard.ROWS; row++) {
+            int prev = row & 0xF;
+            for (int j = 1; j < 4; j++) {
+                int e = (row >>> (4 * j)) & 0xF;
+                int a = (prev == 0) ? 0 : 1 << prev;
+                int c = (e == 0) ? 0 : 1 << e;
+                ROUGHNESS[row] += Math.abs(a - c);
+                prev = e;
             }
         }
+    }
+
+    /** Evaluation function using neural network. */
+    private class NetworkEvaluator implements Evaluator {
+        /** Network inputs of the current board or batch, one buffer per searching thread. */
+        private final ThreadLocal<double[]> inputs = ThreadLocal.withInitial(() -> new double[16]);
+
+        @Override
+        public double evaluate(long board, int score) {
+            double[] x = inputs.get(); // at least 16 values; the network reads the first 16
+            int counter = 0;
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    x[counter] = BitBoard.value(board, i, j);
+                    counter++;
+                }
+            }
 
-        for (int i = 0; i < b.BOARD_SIZE-1; i++) { // for right-most column
-            int downDiff = Math.abs(b.board[i][b.BOARD_SIZE-1]-b.board[i+1][b.BOARD_SIZE-1]);
-            adjScore += downDiff;
+            return nn.forwardProp(x);
         }
 
-        for (int j = 0; j < b.BOARD_SIZE-1; j++) { // for down-most row
-            int rightDiff = Math.abs(b.board[b.BOARD_SIZE-1][j]-b.board[b.BOARD_SIZE-1][j+1]);
-            adjScore += rightDiff;
+        @Override
+        public void evaluate(long[] boards, int[] scores, int n, double[] out) {
+            double[] batchX = inputs.get();
+            if (batchX.length < 16 * n) {
+                batchX = new double[16 * n];
+                inputs.set(batchX);
+            }
+            int counter = 0;
+            for (int k = 0; k < n; k++) {
+                for (int i = 0; i < 4; i++) {
+                    for (int j = 0; j < 4; j++) {
+                        batchX[counter] = BitBoard.value(boards[k], i, j);
+                        counter++;
+                    }
+                }
+            }
+
+            nn.forwardProp(batchX, n, out);
         }
+    }
 
-        return b.score - adjScore;
+    /** Evaluation function using hand-crafted logic, <tt> eval </tt>. */
+    private class HeuristicEvaluator implements Evaluator {
+        @Override
+        public double evaluate(long board, int score) {
+            return eval(board, score);
+        }
+
+        /** Rows and columns are scored alike, and <tt> ROUGHNESS </tt> reads the same in both directions. */
+        @Override
+        public boolean isSymmetric() {
+            return true;
+        }
+    }
+
+    /**
+     * Evaluation function using hand-crafted logic: the score minus the differences between all adjacent tiles. Rows
+     * and columns are looked up in <tt> ROUGHNESS </tt>.
+     */
+    private double eval(long board, int score) {
+        long t = BitBoard.transpose(board);
+        int adjScore = 0;
+
+        for (int i = 0; i < 4; i++) {
+            adjScore += ROUGHNESS[BitBoard.row(board, i)] + ROUGHNESS[BitBoard.row(t, i)];
+        }
+
+        return score - adjScore;
     }
 
     /** AI plays a move. */
     public void play() {
+        b.play(chooseMove()); // play the best move
+    }
+
+    /**
+     * Returns the best move on the current board, or 'A' if no move is possible. With statistics enabled, also records
+     * the time taken and the depth reached, and commits a <tt> SearchEvent </tt> if Flight Recorder is recording.
+     */
+    public char chooseMove() {
+        if (stats == null) {
+            return think();
+        }
+
+        SearchEvent event = new SearchEvent();
+        boolean recording = event.isEnabled();
+        long nodes = recording ? stats.getNodes() : 0;
+        long cutoffs = recording ? stats.getCutoffs() : 0;
+        long evaluations = recording ? stats.getEvaluations() : 0;
+        long tableHits = recording ? stats.getTableHits() : 0;
+
+        event.begin();
+        long start = System.nanoTime();
+        char move = think();
+        stats.move(System.nanoTime() - start, completedDepth);
+        event.end();
+
+        if (recording && event.shouldCommit()) {
+            event.move = move;
+            event.completedDepth = completedDepth;
+            event.expectimax = expectimax;
+            event.nodes = stats.getNodes() - nodes;
+            event.cutoffs = stats.getCutoffs() - cutoffs;
+            event.evaluations = stats.getEvaluations() - evaluations;
+            event.tableHits = stats.getTableHits() - tableHits;
+            event.commit();
+        }
+        return move;
+    }
+
+    /** Same as <tt> chooseMove </tt>, without statistics. */
+    private char think() {
+        if (evaluator instanceof NetworkEvaluator) { // pick up a reloaded network between moves
+            nn = ModelRegistry.get(NETWORK, new Logistic());
+        }
+        if (ordering != null) {
+            ordering.age();
+        }
+        long board = BitBoard.pack(b.board);
+        if (budget == 0) {
+            completedDepth = adaptiveDepth ? adaptiveDepth(board) : DEPTH;
+            return search(board, b.score, completedDepth);
+        }
+
         char bestMove = 'A';
-        double max = Double.MIN_VALUE;
-        // alpha-beta pruning for efficiency
-        double alpha = Double.MIN_VALUE;
-        double beta = Double.MAX_VALUE;
+        for (char move : BitBoard.MOVES) { // any valid move, in case not even depth 1 finishes
+            if (BitBoard.move(board, move) != board) {
+                bestMove = move;
+                break;
+            }
+        }
 
-        if (b.leftBoard != null) { // check shifting left
-            double val = maximin(b.leftBoard, DEPTH-1, alpha, beta);
-            if (val >= max) {
-                bestMove = 'L';
-                max = val;
+        completedDepth = 0;
+        deadline = System.nanoTime() + budget;
+        try {
+            for (int depth = 1; depth <= MAX_DEPTH; depth++) { // iterative deepening
+                if (aspiration > 0 && depth > 1 && !expectimax) {
+                    double lo = rootValue - aspiration;
+                    double hi = rootValue + aspiration;
+                    char move = search(board, b.score, depth, lo, hi);
+                    if (rootValue <= lo || rootValue >= hi) { // outside the window: search again in full
+                        move = search(board, b.score, depth);
+                    }
+                    bestMove = move;
+                }
+                else {
+                    bestMove = search(board, b.score, depth);
+                }
+                completedDepth = depth;
             }
         }
-        if (b.rightBoard != null) { // check shifting right
-            double val = maximin(b.rightBoard, DEPTH-1, alpha, beta);
-            if (val >= max) {
-                bestMove = 'R';
-                max = val;
+        catch (SearchTimeout e) { // keep the move from the deepest finished search
+        }
+        finally {
+            deadline = 0;
+        }
+        return bestMove;
+    }
+
+    /** Thrown from inside the search when the time budget of the current move runs out. */
+    @SuppressWarnings("serial") // never serialized
+    private static class SearchTimeout extends RuntimeException {
+        SearchTimeout() {
+            super(null, null, false, false); // no stack trace
+        }
+    }
+
+    private static final SearchTimeout TIMEOUT = new SearchTimeout();
+
+    /** Throws <tt> TIMEOUT </tt> if the current search has run past its deadline. */
+    private void checkTime() {
+        if (deadline != 0 && System.nanoTime() > deadline) {
+            throw TIMEOUT;
+        }
+    }
+
+    /**
+     * Waits until no task of the timed-out search is running any more. A task which throws <tt> TIMEOUT </tt> ends
+     * <tt> invokeAll </tt> before its siblings have finished; the siblings read <tt> deadline </tt> and <tt>
+     * searchDepth </tt>, so those must not change until the siblings have timed out too. They do so at their next
+     * node, as <tt> deadline </tt> has passed.
+     */
+    private void awaitStragglers() {
+        while (!pool.awaitQuiescence(1, TimeUnit.SECONDS)) {
+            // keep waiting: returning early would let stragglers search without a deadline
+        }
+    }
+
+    /** Returns the best move found by searching <tt> depth </tt> plies, or 'A' if no move is possible. */
+    private char search(long board, int score, int depth) {
+        return search(board, score, depth, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Same as <tt> search(board, score, depth) </tt>, with the root value of minimax search bounded to <tt> (alpha,
+     * beta) </tt>. Sets <tt> rootValue </tt>; a value outside the bounds means the true value is outside too.
+     */
+    private char search(long board, int score, int depth, double alpha, double beta) {
+        searchDepth = depth;
+        if (pool != null) {
+            try {
+                return pool.invoke(new RootTask(board, score, depth, alpha, beta));
+            }
+            catch (SearchTimeout e) {
+                awaitStragglers();
+                throw e;
             }
         }
-        if (b.downBoard != null) { // check shifting down
-            double val = maximin(b.downBoard, DEPTH-1, alpha, beta);
-            if (val >= max) {
-                bestMove = 'D';
-                max = val;
+
+        char bestMove = 'A';
+        double max = Double.NEGATIVE_INFINITY;
+        int[][] orders = expectimax ? null : spawnOrders.get();
+
+        for (char move : BitBoard.MOVES) { // check shifting left, right, down and up
+            long next = BitBoard.move(board, move);
+            if (next != board) {
+                int s = score + BitBoard.moveScore(board, move);
+                double val = expectimax ? chance(next, s, depth-1, 1) : maximin(next, s, depth-1, alpha, beta, orders);
+                // a later minimax move equal to alpha may only be an upper bound, so keep the first
+                if (expectimax ? val >= max : (val > max || bestMove == 'A')) {
+                    bestMove = move;
+                    max = val;
+                }
+                if (!expectimax) { // alpha-beta pruning for efficiency
+                    alpha = Double.max(alpha, val);
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
             }
         }
-        if (b.upBoard != null) { // check shifting up
-            double val = maximin(b.upBoard, DEPTH-1, alpha, beta);
-            if (val >= max) {
-                bestMove = 'U';
-                max = val;
+
+        rootValue = max;
+        return bestMove;
+    }
+
+    /**
+     * Searches every root move as its own task. In minimax search the best value found so far is shared as the alpha
+     * bound of the moves still being searched; a move that fails low against it is never chosen.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private class RootTask extends RecursiveTask<Character> {
+        private final long board;
+        private final int score;
+        private final int depth;
+        private final double alpha;
+        private final double beta;
+
+        RootTask(long board, int score, int depth, double alpha, double beta) {
+            this.board = board;
+            this.score = score;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
+
+        @Override
+        protected Character compute() {
+            AtomicLong shared = new AtomicLong(Double.doubleToLongBits(alpha));
+            List<MoveTask> tasks = new ArrayList<>(4);
+            for (char move : BitBoard.MOVES) {
+                long next = BitBoard.move(board, move);
+                if (next != board) {
+                    int s = score + BitBoard.moveScore(board, move);
+                    tasks.add(new MoveTask(move, next, s, depth, shared, alpha, beta));
+                }
             }
+            ForkJoinTask.invokeAll(tasks);
+
+            char bestMove = 'A';
+            double max = Double.NEGATIVE_INFINITY;
+            for (MoveTask t : tasks) { // same order and tie-breaking as the sequential search
+                if (t.exact && (expectimax ? t.val >= max : (t.val > max || bestMove == 'A'))) {
+                    bestMove = t.move;
+                    max = t.val;
+                }
+            }
+            rootValue = max;
+            return bestMove;
         }
+    }
+
+    /** Searches a single root move. */
+    @SuppressWarnings("serial") // never serialized
+    private class MoveTask extends RecursiveTask<Void> {
+        private final char move;
+        private final long next;
+        private final int score;
+        private final int depth;
+        /** Raw bits of the best root value found by any task. */
+        private final AtomicLong alpha;
+        /** Bounds of the root value. */
+        private final double rootAlpha;
+        private final double beta;
+        private double val;
+        /** False if the value is only an upper bound below the shared alpha. */
+        private boolean exact = true;
 
-        b.play(bestMove); // play the best move
+        MoveTask(char move, long next, int score, int depth, AtomicLong alpha, double rootAlpha, double beta) {
+            this.move = move;
+            this.next = next;
+            this.score = score;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.rootAlpha = rootAlpha;
+            this.beta = beta;
+        }
+
+        @Override
+        protected Void compute() {
+            if (expectimax) {
+                val = chance(next, score, depth-1, 1);
+                return null;
+            }
+
+            double a = Double.longBitsToDouble(alpha.get());
+            val = maximin(next, score, depth-1, a, beta, spawnOrders.get());
+            exact = val > a || a == rootAlpha;
+
+            long current = alpha.get(); // raise the shared bound
+            while (val > Double.longBitsToDouble(current)
+                    && !alpha.compareAndSet(current, Double.doubleToLongBits(val))) {
+                current = alpha.get();
+            }
+            return null;
+        }
+    }
+
+    /** Expected value of a single empty square at a chance node, searched as its own task. */
+    @SuppressWarnings("serial") // never serialized
+    private class SpawnTask extends RecursiveTask<Double> {
+        private final long board;
+        private final long two;
+        private final int score;
+        private final int depth;
+        /** Probability of reaching the square's chance node. */
+        private final double prob;
+
+        SpawnTask(long board, long two, int score, int depth, double prob) {
+            this.board = board;
+            this.two = two;
+            this.score = score;
+            this.depth = depth;
+            this.prob = prob;
+        }
+
+        @Override
+        protected Double compute() {
+            return 0.9 * expectimax(board | two, score, depth, prob * 0.9)
+                    + 0.1 * expectimax(board | (two << 1), score, depth, prob * 0.1);
+        }
     }
 
-    private double minimax(Board b, int depth, double alpha, double beta) {
+    /** Minimax player node. <tt> orders </tt> holds the spawn orders of the searching thread. */
+    private double minimax(long board, int score, int depth, double alpha, double beta, int[][] orders) {
+        countNode(depth);
+        checkTime();
         if (depth == 0) { // maximum depth reached
-            return eval(b);
+            return evaluate(board, score);
         }
-        else if (b.checkGameOver()) { // game is lost
-            return Double.MIN_VALUE;
+        else if (BitBoard.isGameOver(board)) { // game is lost
+            return LOSS;
         }
         else { // check all moves to see which is best
-            double val = Double.MIN_VALUE;
-
-            if (b.leftBoard != null) { // left
-                double tmp = maximin(b.leftBoard, depth-1, alpha, beta);
-                if (tmp > val) {
-                    val = tmp;
-                }
-                if (val >= beta) {
-                    return val;
+            long key = (table != null) ? key(board) : board;
+            if (table != null) { // reuse a previous search of this position
+                double cached = table.lookup(key, score, depth, alpha, beta);
+                if (!Double.isNaN(cached)) {
+                    if (stats != null) {
+                        stats.tableHit();
+                    }
+                    return cached;
                 }
-                alpha = Double.max(alpha, val);
             }
-            if (b.rightBoard != null) { // right
-                double tmp = maximin(b.rightBoard, depth-1, alpha, beta);
-                if (tmp > val) {
-                    val = tmp;
+
+            double val = Double.NEGATIVE_INFINITY;
+            double alphaIn = alpha;
+            int ply = searchDepth - depth;
+            int order = (ordering == null) ? MoveOrdering.IDENTITY : ordering.order(ply);
+
+            for (int k = 0; k < 4; k++) { // left, right, down, up unless reordered
+                int m = (order >>> (2 * k)) & 3;
+                char move = BitBoard.MOVES[m];
+                long next = BitBoard.move(board, move);
+                if (next != board) {
+                    double tmp = maximin(next, score + BitBoard.moveScore(board, move), depth-1, alpha, beta, orders);
+                    if (tmp > val) {
+                        val = tmp;
+                    }
+                    if (val >= beta) {
+                        if (ordering != null) {
+                            ordering.cutoff(ply, m, depth);
+                        }
+                        if (stats != null) {
+                            stats.cutoff();
+                        }
+                        if (table != null) {
+                            table.store(key, score, depth, val, TranspositionTable.LOWER);
+                        }
+                        return val;
+                    }
+                    alpha = Double.max(alpha, val);
                 }
-                if (val >= beta) {
-                    return val;
+            }
+
+            if (table != null) {
+                int bound = (val <= alphaIn) ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+                table.store(key, score, depth, val, bound);
+            }
+            return val; // return value of best move
+        }
+    }
+
+    /** Minimax adversary node, placing a 2 on the worst square. <tt> orders </tt> is as in <tt> minimax </tt>. */
+    private double maximin(long board, int score, int depth, double alpha, double beta, int[][] orders) {
+        countNode(depth);
+        if (depth == 0) { // maximum depth is reached
+            return evaluate(board, score);
+        }
+        else { // check all tile placements to see which is worst
+            double val = Double.POSITIVE_INFINITY;
+            long empty = BitBoard.emptyMask(board);
+            int[] squares = orders[searchDepth - depth];
+            int n = 0;
+            while (empty != 0) { // raster order, or most damaging first if ordering
+                int square = Long.numberOfTrailingZeros(empty) >>> 2;
+                empty &= empty - 1;
+                int key = (ordering == null) ? 0 : damage(board, square);
+                int pos = n++;
+                while (pos > 0 && (squares[pos-1] >>> 4) < key) {
+                    squares[pos] = squares[pos-1];
+                    pos--;
                 }
-                alpha = Double.max(alpha, val);
+                squares[pos] = (key << 4) | square;
             }
-            if (b.downBoard != null) { // down
-                double tmp = maximin(b.downBoard, depth-1, alpha, beta);
-                if (tmp > val) {
+
+            for (int k = 0; k < n; k++) {
+                long placed = board | (1L << (4 * (squares[k] & 0xF))); // place tile
+                double tmp = minimax(placed, score, depth-1, alpha, beta, orders);
+
+                if (tmp < val) {
                     val = tmp;
                 }
-                if (val >= beta) {
+
+                if (val <= alpha) {
+                    if (stats != null) {
+                        stats.cutoff();
+                    }
                     return val;
                 }
-                alpha = Double.max(alpha, val);
+                beta = Double.min(beta, val);
             }
-            if (b.upBoard != null) { // up
-                double tmp = maximin(b.upBoard, depth-1, alpha, beta);
-                if (tmp > val) {
-                    val = tmp;
-                }
-                if (val >= beta) {
-                    return val;
+            return val; // return value of worst move
+        }
+    }
+
+    /**
+     * Returns how much spawning a tile on the empty square <tt> square </tt> (index <tt> 4i+j </tt>) is likely to hurt
+     * the player: the sum of the exponents of the tiles next to it, which a 2 would separate from each other.
+     */
+    private static int damage(long board, int square) {
+        int i = square >>> 2;
+        int j = square & 3;
+        int sum = 0;
+        if (j > 0) {
+            sum += (int) (board >>> (4 * (square-1))) & 0xF;
+        }
+        if (j < 3) {
+            sum += (int) (board >>> (4 * (square+1))) & 0xF;
+        }
+        if (i > 0) {
+            sum += (int) (board >>> (4 * (square-4))) & 0xF;
+        }
+        if (i < 3) {
+            sum += (int) (board >>> (4 * (square+4))) & 0xF;
+        }
+        return sum;
+    }
+
+    /**
+     * Expectimax player node: returns the value of the best move, or <tt> LOSS </tt> if no move is possible. <tt>
+     * prob </tt> is the probability of the spawns leading to this node.
+     */
+    private double expectimax(long board, int score, int depth, double prob) {
+        if (depth == batchPlies && depth > 0) {
+            return batched(board, score, depth, prob, false);
+        }
+        countNode(depth);
+        checkTime();
+        if (depth == 0) { // maximum depth reached
+            return evaluate(board, score);
+        }
+        long key = (table != null) ? key(board) : board;
+        if (table != null) { // reuse a previous search of this position
+            double cached = table.lookup(key, score, depth, LOSS, -LOSS);
+            if (!Double.isNaN(cached)) {
+                if (stats != null) {
+                    stats.tableHit();
                 }
-                alpha = Double.max(alpha, val);
+                return cached;
             }
+        }
 
-            return val; // return value of best move
+        double val = LOSS;
+        for (char move : BitBoard.MOVES) { // left, right, down, up
+            long next = BitBoard.move(board, move);
+            if (next != board) {
+                val = Math.max(val, chance(next, score + BitBoard.moveScore(board, move), depth-1, prob));
+            }
+        }
+
+        if (table != null) {
+            table.store(key, score, depth, val, TranspositionTable.EXACT);
         }
+        return val;
     }
 
-    private double maximin(Board b, int depth, double alpha, double beta) {
-        if (depth == 0) { // maximum depth is reached
-            return eval(b);
+    /**
+     * Expectimax chance node: returns the expected value over all tile spawns. Every empty square is equally likely,
+     * and the new tile is a 2 with probability 0.9 and a 4 with probability 0.1. Spawns reached with probability
+     * below <tt> minProb </tt> are not searched; the board is evaluated as it is instead.
+     */
+    private double chance(long board, int score, int depth, double prob) {
+        if (depth == batchPlies && depth > 0) {
+            return batched(board, score, depth, prob, true);
+        }
+        countNode(depth);
+        long empty = BitBoard.emptyMask(board);
+        if (depth == 0 || empty == 0 || prob < minProb) { // maximum depth reached or too unlikely
+            return evaluate(board, score);
         }
-        else { // check all tile placements to see which is worst
-            double val = Double.MAX_VALUE;
-            for (int i = 0; i < b.BOARD_SIZE; i++) {
-                for (int j = 0; j < b.BOARD_SIZE; j++) {
-                    if (b.board[i][j] == 0) {
-                        b.board[i][j] = 2; // place tile
-                        double tmp = minimax(b, depth-1, alpha, beta);
-
-                        if (tmp < val) {
-                            val = tmp;
-                        }
 
-                        b.board[i][j] = 0; // remove tile to test next tile square
-                        if (val <= alpha) {
-                            return val;
-                        }
-                        beta = Double.min(beta, val);
-                    }
+        int count = Long.bitCount(empty);
+        prob /= count; // probability of each square
+        double sum = 0;
+        if (pool != null && splitDepth > 0 && depth >= splitDepth && ForkJoinTask.inForkJoinPool()) {
+            List<SpawnTask> tasks = new ArrayList<>(count);
+            while (empty != 0) {
+                long two = empty & -empty;
+                empty ^= two;
+                tasks.add(new SpawnTask(board, two, score, depth-1, prob));
+            }
+            for (SpawnTask t : ForkJoinTask.invokeAll(tasks)) {
+                sum += t.join();
+            }
+            return sum / count;
+        }
+
+        while (empty != 0) {
+            long two = empty & -empty; // exponent 1 in the lowest empty square
+            empty ^= two;
+            sum += 0.9 * expectimax(board | two, score, depth-1, prob * 0.9)
+                    + 0.1 * expectimax(board | (two << 1), score, depth-1, prob * 0.1);
+        }
+        return sum / count;
+    }
+
+    /** Leaves of an expectimax subtree and their values. */
+    private static class LeafBatch {
+        long[] boards = new long[256];
+        int[] scores = new int[256];
+        double[] values = new double[256];
+        /** Number of leaves collected. */
+        int size;
+        /** Index of the next value to back up. */
+        int next;
+
+        void add(long board, int score) {
+            if (size == boards.length) {
+                boards = Arrays.copyOf(boards, 2 * size);
+                scores = Arrays.copyOf(scores, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            boards[size] = board;
+            scores[size] = score;
+            size++;
+        }
+    }
+
+    /**
+     * Evaluates the expectimax subtree of <tt> board </tt> in two passes: the first collects its leaves, which are
+     * evaluated in one batch, the second backs their values up in the same order. <tt> isChance </tt> is true for a
+     * chance node and false for a player node.
+     */
+    private double batched(long board, int score, int depth, double prob, boolean isChance) {
+        LeafBatch batch = batches.get();
+        batch.size = 0;
+        collect(board, score, depth, prob, isChance, batch);
+        evaluator.evaluate(batch.boards, batch.scores, batch.size, batch.values);
+        if (stats != null) {
+            stats.evaluations(batch.size);
+        }
+        batch.next = 0;
+        return backUp(board, score, depth, prob, isChance, batch);
+    }
+
+    /** Adds the leaves of the subtree to <tt> batch </tt>, visiting them in the order <tt> backUp </tt> uses. */
+    private void collect(long board, int score, int depth, double prob, boolean isChance, LeafBatch batch) {
+        if (isChance) {
+            long empty = BitBoard.emptyMask(board);
+            if (depth == 0 || empty == 0 || prob < minProb) {
+                batch.add(board, score);
+                return;
+            }
+            prob /= Long.bitCount(empty);
+            while (empty != 0) {
+                long two = empty & -empty;
+                empty ^= two;
+                collect(board | two, score, depth-1, prob * 0.9, false, batch);
+                collect(board | (two << 1), score, depth-1, prob * 0.1, false, batch);
+            }
+        }
+        else {
+            if (depth == 0) {
+                batch.add(board, score);
+                return;
+            }
+            for (char move : BitBoard.MOVES) {
+                long next = BitBoard.move(board, move);
+                if (next != board) {
+                    collect(next, score + BitBoard.moveScore(board, move), depth-1, prob, true, batch);
                 }
             }
-            return val; // return value of worst move
+        }
+    }
+
+    /** Same as <tt> expectimax </tt> and <tt> chance </tt>, but reads leaf values from <tt> batch </tt>. */
+    private double backUp(long board, int score, int depth, double prob, boolean isChance, LeafBatch batch) {
+        countNode(depth);
+        if (isChance) {
+            long empty = BitBoard.emptyMask(board);
+            if (depth == 0 || empty == 0 || prob < minProb) {
+                return batch.values[batch.next++];
+            }
+            int count = Long.bitCount(empty);
+            prob /= count;
+            double sum = 0;
+            while (empty != 0) {
+                long two = empty & -empty;
+                empty ^= two;
+                sum += 0.9 * backUp(board | two, score, depth-1, prob * 0.9, false, batch)
+                        + 0.1 * backUp(board | (two << 1), score, depth-1, prob * 0.1, false, batch);
+            }
+            return sum / count;
+        }
+        else {
+            if (depth == 0) {
+                return batch.values[batch.next++];
+            }
+            double val = LOSS;
+            for (char move : BitBoard.MOVES) {
+                long next = BitBoard.move(board, move);
+                if (next != board) {
+                    int s = score + BitBoard.moveScore(board, move);
+                    val = Math.max(val, backUp(next, s, depth-1, prob, true, batch));
+                }
+            }
+            return val;
         }
     }
 
@@ -192,7 +979,7 @@ public class MinimaxAI {
     private static void demo() { // plays the game from start to finish
         MinimaxAI m = new MinimaxAI();
 
-        while (!m.b.checkGameOver()) {
+        while (!m.b.isGameOver()) {
             m.play();
             m.b.printBoard();
         }
@@ -213,12 +1000,13 @@ public class MinimaxAI {
             MinimaxAI m = new MinimaxAI();
             List<int[][]> savedBoards = new ArrayList<>(1500);
 
-            while (!m.b.checkGameOver()) {
+            while (!m.b.isGameOver()) {
                 m.play();
                 savedBoards.add(m.deepCopy());
             }
 
-            int boardIndex = (int) ((Math.random() * 0.5 * savedBoards.size()) + (0.5 * savedBoards.size()));
+            double r = ThreadLocalRandom.current().nextDouble();
+            int boardIndex = (int) ((r * 0.5 * savedBoards.size()) + (0.5 * savedBoards.size()));
             int[][] board = savedBoards.get(boardIndex);
             int y1 = m.b.score;
             int y2 = savedBoards.size() - boardIndex;
@@ -0,0 +1,111 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide cache of neural networks loaded from files. Each file is loaded once and the same network is handed
+ * to every caller, so AIs must only read from it. A changed file can be reloaded, either explicitly or by a
+ * background watcher; the new network replaces the old one atomically and callers pick it up the next time they call
+ * <tt> get </tt>.
+ */
+public final class ModelRegistry {
+    /** A loaded network and the state of its file when it was loaded. */
+    private static final class Model {
+        final File file;
+        final ActivationFunction f;
+        final FlatNeuralNetwork nn;
+        final long modified;
+        final long length;
+
+        Model(File file, ActivationFunction f) throws IOException {
+            this.file = file;
+            this.f = f;
+            modified = file.lastModified(); // read before loading so a concurrent write is noticed next time
+            length = file.length();
+            nn = NetworkFile.load(file.getPath(), f); // validated, so never partly initialized
+        }
+
+        boolean isStale() {
+            return file.lastModified() != modified || file.length() != length;
+        }
+    }
+
+    /** Loaded networks by absolute path. */
+    private static final ConcurrentHashMap<String, Model> MODELS = new ConcurrentHashMap<>();
+    /** Thread checking the files for changes; null if not watching. */
+    private static ScheduledExecutorService watcher;
+
+    private ModelRegistry() {}
+
+    private static String key(String pathName) {
+        return new File(pathName).getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    /**
+     * Returns the network stored at <tt> pathName </tt>, loading it on first use. Text files use <tt> f </tt> as
+     * activation function; binary files carry their own. Networks are cached by path only: once a file is loaded,
+     * <tt> f </tt> is ignored and every caller gets the network loaded first, with the activation function given
+     * then, including after reloads. Throws <tt> UncheckedIOException </tt> if the file cannot be loaded.
+     */
+    public static FlatNeuralNetwork get(String pathName, ActivationFunction f) {
+        return MODELS.computeIfAbsent(key(pathName), k -> {
+            try {
+                return new Model(new File(k), f);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).nn;
+    }
+
+    /**
+     * Reloads the network at <tt> pathName </tt> if its file changed since it was loaded. Returns true if a new
+     * network was installed. If the new file cannot be loaded or is not a valid network, for example because it is
+     * being rewritten, the old network is kept and the error is printed; the file is tried again on the next call.
+     */
+    public static boolean reloadIfChanged(String pathName) {
+        String k = key(pathName);
+        Model old = MODELS.get(k);
+        if (old == null || !old.isStale()) {
+            return false;
+        }
+
+        try {
+            Model loaded = new Model(old.file, old.f);
+            return MODELS.replace(k, old, loaded); // lose to a concurrent reload rather than overwrite it
+        }
+        catch (IOException | RuntimeException e) { // never let a bad file stop the watcher
+            System.err.println("Keeping the previous network of " + k + ": " + e);
+            return false;
+        }
+    }
+
+    /** Starts a daemon thread which reloads changed networks every <tt> intervalMillis </tt> milliseconds. */
+    public static synchronized void watch(long intervalMillis) {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "model-registry-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            for (String k : MODELS.keySet()) {
+                reloadIfChanged(k);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops the thread started by <tt> watch </tt>. */
+    public static synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+}
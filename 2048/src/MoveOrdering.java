@@ -0,0 +1,71 @@
+/**
+ * Orders the moves tried at player nodes of the minimax search so that cutoffs come early. Moves are tried killer
+ * first, the move which last caused a cutoff at the same ply, then by history, the total depth squared of all cutoffs
+ * the move caused at that ply. Ties keep the order of <tt> BitBoard.MOVES </tt>. Orders are packed into an <tt> int
+ * </tt>, two bits per move index, so ordering never allocates.
+ * <p>
+ * The tables are only hints: when several threads search at once they update them without synchronization, which can
+ * lose updates but never affects the value of the search.
+ */
+class MoveOrdering {
+    /** Order of <tt> BitBoard.MOVES </tt> itself. */
+    static final int IDENTITY = 0b11_10_01_00;
+
+    /** Move which last caused a cutoff at each ply; -1 if none. */
+    private final int[] killers = new int[MinimaxAI.MAX_DEPTH + 1];
+    /** Sum of the squared depths of the cutoffs caused by each move at each ply. */
+    private final int[][] history = new int[MinimaxAI.MAX_DEPTH + 1][4];
+
+    MoveOrdering() {
+        clear();
+    }
+
+    /** Forgets all cutoffs. */
+    void clear() {
+        for (int p = 0; p < killers.length; p++) {
+            killers[p] = -1;
+            history[p][0] = history[p][1] = history[p][2] = history[p][3] = 0;
+        }
+    }
+
+    /** Halves the history between moves, so recent positions count more than old ones. */
+    void age() {
+        for (int[] h : history) {
+            for (int m = 0; m < 4; m++) {
+                h[m] >>= 1;
+            }
+        }
+    }
+
+    /** Returns the order of the moves at <tt> ply </tt>; the <tt> k </tt>-th is <tt> (order >>> 2k) & 3 </tt>. */
+    int order(int ply) {
+        ply = Math.min(ply, killers.length-1);
+        int killer = killers[ply];
+        int[] h = history[ply];
+
+        int order = 0;
+        for (int m = 0; m < 4; m++) { // insertion sort by descending key, stable
+            int k = key(m, killer, h);
+            int pos = m;
+            while (pos > 0 && key((order >>> (2 * (pos-1))) & 3, killer, h) < k) {
+                pos--;
+            }
+            int low = order & ((1 << (2 * pos)) - 1); // moves before the insertion point
+            int high = (order >>> (2 * pos)) << (2 * (pos+1));
+            order = low | (m << (2 * pos)) | high;
+        }
+        return order;
+    }
+
+    /** Returns the sort key of move index <tt> m </tt>: the killer first, then by history. */
+    private static int key(int m, int killer, int[] h) {
+        return (m == killer) ? Integer.MAX_VALUE : h[m];
+    }
+
+    /** Records that move index <tt> m </tt> caused a cutoff at <tt> ply </tt> with <tt> depth </tt> plies left. */
+    void cutoff(int ply, int m, int depth) {
+        ply = Math.min(ply, killers.length-1);
+        killers[ply] = m;
+        history[ply][m] += depth * depth;
+    }
+}
@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Evaluation function made of n-tuples: each tuple is a fixed set of squares with a table holding one weight for
+ * every combination of exponents on those squares. A board is scored by looking up every tuple on each of its eight
+ * reflections and rotations and adding the weights, so equivalent boards share their weights and the value is
+ * symmetric. With the default tuples a board costs 32 table lookups; the tables hold about 34 million weights (134
+ * MB).
+ * <p>
+ * Networks are stored in a little-endian binary format:
+ * <pre>
+ *     int      magic ("NT48")
+ *     int      version
+ *     int      number of tuples T
+ *     for each tuple: int number of squares k, then int[k] squares (4i+j for row i, column j)
+ *     padding with zeros to a multiple of 8 bytes
+ *     for each tuple: float[16^k] weights, indexed by the exponent on square s_m in bits 4m to 4m+3
+ * </pre>
+ */
+public class NTupleNetwork implements Evaluator {
+    /** First four bytes of a network file. */
+    static final int MAGIC = 0x3834544E;
+    /** Current version of the file format. */
+    static final int VERSION = 1;
+    /** File the trainer writes and the arena reads by default. */
+    static final String DEFAULT_FILE = "Data/NTupleNetwork.bin";
+    /** Largest number of squares in a tuple; a tuple of 6 squares has 16^6 weights. */
+    static final int MAX_SQUARES = 6;
+
+    /**
+     * Default tuples: the first two rows, and the 2x3 rectangles at the edge and in the middle of the board. Through
+     * the symmetries they cover every line and every 2x3 rectangle.
+     */
+    public static final int[][] DEFAULT_TUPLES = {
+            {0, 1, 2, 3},
+            {4, 5, 6, 7},
+            {0, 1, 2, 4, 5, 6},
+            {4, 5, 6, 8, 9, 10}};
+
+    /** Squares of each tuple. */
+    final int[][] tuples;
+    /** Bit offsets of the squares of each tuple in a packed board. */
+    private final int[][] shifts;
+    /** Weights of each tuple, indexed by the exponents on its squares. Shared by all symmetries. */
+    final float[][] weights;
+
+    /** Initializes a network with the default tuples and all weights zero. */
+    public NTupleNetwork() {
+        this(DEFAULT_TUPLES);
+    }
+
+    /**
+     * Initializes a network with the tuples <tt> tuples </tt> and all weights zero. Each tuple lists between 1 and
+     * <tt> MAX_SQUARES </tt> distinct squares, numbered 4i+j for row i, column j.
+     */
+    public NTupleNetwork(int[][] tuples) {
+        this.tuples = new int[tuples.length][];
+        shifts = new int[tuples.length][];
+        weights = new float[tuples.length][];
+        for (int k = 0; k < tuples.length; k++) {
+            int[] tuple = tuples[k];
+            if (tuple.length == 0 || tuple.length > MAX_SQUARES) {
+                throw new IllegalArgumentException("tuple " + k + " must have 1 to " + MAX_SQUARES + " squares");
+            }
+            int used = 0;
+            for (int square : tuple) {
+                if (square < 0 || square >= 16 || (used & (1 << square)) != 0) {
+                    throw new IllegalArgumentException("tuple " + k + " has an invalid square " + square);
+                }
+                used |= 1 << square;
+            }
+
+            this.tuples[k] = tuple.clone();
+            shifts[k] = new int[tuple.length];
+            for (int m = 0; m < tuple.length; m++) {
+                shifts[k][m] = 4 * tuple[m];
+            }
+            weights[k] = new float[1 << (4 * tuple.length)];
+        }
+    }
+
+    /** Returns the number of weights of the network. */
+    public long size() {
+        long size = 0;
+        for (float[] w : weights) {
+            size += w.length;
+        }
+        return size;
+    }
+
+    /** Returns the index of the weight of tuple <tt> k </tt> on the packed board <tt> b </tt>. */
+    int index(long b, int k) {
+        int[] s = shifts[k];
+        int index = 0;
+        for (int m = 0; m < s.length; m++) {
+            index |= (int) ((b >>> s[m]) & 0xF) << (4 * m);
+        }
+        return index;
+    }
+
+    /** Returns the sum of the weights of all tuples on <tt> b </tt>, without symmetries. */
+    private double lookup(long b) {
+        double val = 0;
+        for (int k = 0; k < weights.length; k++) {
+            val += weights[k][index(b, k)];
+        }
+        return val;
+    }
+
+    /**
+     * Returns the value of <tt> board </tt> reached with game score <tt> score </tt>: the score plus the sum of the
+     * weights of the board on all eight symmetries, which estimates the score still to be gained.
+     */
+    @Override
+    public double evaluate(long board, int score) {
+        long t = BitBoard.transpose(board);
+        long c = BitBoard.flipColumns(board);
+        long tc = BitBoard.flipColumns(t);
+        return score + lookup(board) + lookup(c) + lookup(BitBoard.flipRows(board)) + lookup(BitBoard.flipRows(c))
+                + lookup(t) + lookup(tc) + lookup(BitBoard.flipRows(t)) + lookup(BitBoard.flipRows(tc));
+    }
+
+    /**
+     * Adds <tt> delta </tt> to every weight used to evaluate <tt> board </tt>, on all eight symmetries. Weights are
+     * written without synchronization, so several threads may train the same network (Hogwild): concurrent updates
+     * of one weight may lose one of them, which stochastic training tolerates.
+     */
+    void update(long board, float delta) {
+        for (int sym = 0; sym < BitBoard.SYMMETRIES; sym++) {
+            long b = BitBoard.transform(board, sym);
+            for (int k = 0; k < weights.length; k++) {
+                weights[k][index(b, k)] += delta;
+            }
+        }
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    /** Loads the network at <tt> pathName </tt>. Throws <tt> IOException </tt> if it cannot be read or is malformed. */
+    public static NTupleNetwork load(String pathName) throws IOException {
+        try (FileChannel fc = FileChannel.open(Path.of(pathName), StandardOpenOption.READ)) {
+            MappedByteBuffer map = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (map.getInt() != MAGIC) {
+                throw new IOException(pathName + " is not an n-tuple network file");
+            }
+            int version = map.getInt();
+            if (version != VERSION) {
+                throw new IOException(pathName + " has unsupported version " + version);
+            }
+
+            int[][] tuples = new int[map.getInt()][];
+            for (int k = 0; k < tuples.length; k++) {
+                tuples[k] = new int[map.getInt()];
+                for (int m = 0; m < tuples[k].length; m++) {
+                    tuples[k][m] = map.getInt();
+                }
+            }
+            map.position(align(map.position()));
+
+            NTupleNetwork net = new NTupleNetwork(tuples);
+            for (float[] w : net.weights) {
+                map.asFloatBuffer().get(w);
+                map.position(map.position() + w.length * Float.BYTES);
+            }
+            return net;
+        }
+        catch (RuntimeException e) { // buffer underflow, negative sizes or invalid tuples
+            throw new IOException(pathName + " is malformed", e);
+        }
+    }
+
+    /**
+     * Writes the network to <tt> pathName </tt>, replacing any existing file. Weights may be updated concurrently, in
+     * which case the file holds a mix of old and new weights. Throws <tt> IOException </tt> if the file cannot be
+     * written.
+     */
+    public void save(String pathName) throws IOException {
+        int header = 3 * Integer.BYTES;
+        for (int[] tuple : tuples) {
+            header += (1 + tuple.length) * Integer.BYTES;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(align(header)).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(tuples.length);
+        for (int[] tuple : tuples) {
+            buf.putInt(tuple.length);
+            for (int square : tuple) {
+                buf.putInt(square);
+            }
+        }
+        buf.position(buf.capacity());
+
+        try (FileChannel fc = FileChannel.open(Path.of(pathName), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(fc, buf);
+            buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN); // weights in blocks of 64 KB
+            for (float[] w : weights) {
+                for (int i = 0; i < w.length; i += buf.capacity() / Float.BYTES) {
+                    int n = Math.min(w.length - i, buf.capacity() / Float.BYTES);
+                    buf.clear();
+                    buf.asFloatBuffer().put(w, i, n);
+                    buf.position(n * Float.BYTES);
+                    write(fc, buf);
+                }
+            }
+        }
+    }
+
+    /** Writes the bytes of <tt> buf </tt> before its position to <tt> fc </tt>. */
+    private static void write(FileChannel fc, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            fc.write(buf);
+        }
+    }
+
+    /** Rounds <tt> position </tt> up to a multiple of 8. */
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+}
@@ -0,0 +1,293 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes the weights of a <tt> FlatNeuralNetwork </tt>. Besides the text format written by <tt>
+ * NeuralNetworkTraining </tt> (architecture on the first line, then one weight per line), networks can be stored in a
+ * versioned little-endian binary format:
+ * <pre>
+ *     int    magic ("NN48")
+ *     int    version
+ *     int    activation (0 = ReLU, 1 = Logistic, 2 = SmoothReLu)
+ *     int    bytes per value (4 = float, 8 = double)
+ *     int    number of layers L
+ *     int[L] neurons per layer, padded with zeros to a multiple of 8 bytes
+ *     for each layer i &lt; L-1: weights from layer i to i+1 in <tt> FlatNeuralNetwork </tt> order, then biases of
+ *     layer i+1
+ * </pre>
+ * Binary files are memory-mapped and copied block by block into the weight arrays, without any parsing.
+ */
+public class NetworkFile {
+    /** First four bytes of a binary network file. */
+    static final int MAGIC = 0x38344E4E;
+    /** Current version of the binary format. */
+    static final int VERSION = 1;
+
+    /** Returns true if the file at <tt> pathName </tt> starts like a binary network file. */
+    public static boolean isBinary(String pathName) throws IOException {
+        try (FileChannel fc = FileChannel.open(Path.of(pathName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            return fc.read(header, 0) == 4 && header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Loads the network at <tt> pathName </tt> in either format. Binary files carry their own activation function;
+     * text files use <tt> f </tt>. Throws <tt> IOException </tt> if the file cannot be read or is malformed.
+     */
+    public static FlatNeuralNetwork load(String pathName, ActivationFunction f) throws IOException {
+        if (isBinary(pathName)) {
+            return readBinary(pathName);
+        }
+        return readText(pathName, f);
+    }
+
+    /**
+     * Reads a network in the text format, using <tt> f </tt> as activation function. Unlike the <tt>
+     * FlatNeuralNetwork </tt> constructor, throws <tt> IOException </tt> if the file cannot be read, is truncated or
+     * holds anything but numbers, instead of returning a partly initialized network.
+     */
+    public static FlatNeuralNetwork readText(String pathName, ActivationFunction f) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(pathName))) {
+            String line = br.readLine();
+            if (line == null) {
+                throw new IOException(pathName + " is empty");
+            }
+            String[] s = line.trim().split("\\s+");
+            int[] arch = new int[s.length];
+            for (int i = 0; i < s.length; i++) {
+                arch[i] = Integer.parseInt(s[i]);
+            }
+            if (arch.length < 2) {
+                throw new IOException(pathName + " has fewer than two layers");
+            }
+
+            FlatNeuralNetwork nn = new FlatNeuralNetwork(arch, f);
+            for (double[] layer : nn.weights) {
+                for (int j = 0; j < layer.length; j++) {
+                    line = br.readLine();
+                    if (line == null) {
+                        throw new IOException(pathName + " is truncated");
+                    }
+                    layer[j] = Double.parseDouble(line);
+                }
+            }
+            validate(pathName, nn);
+            return nn;
+        }
+        catch (RuntimeException e) { // malformed numbers or negative layer sizes
+            throw new IOException(pathName + " is malformed", e);
+        }
+    }
+
+    /**
+     * Checks that <tt> nn </tt>, read from <tt> pathName </tt>, has positive layer sizes and finite weights and
+     * biases. Throws <tt> IOException </tt> otherwise.
+     */
+    static void validate(String pathName, FlatNeuralNetwork nn) throws IOException {
+        if (nn.arch == null || nn.weights == null || nn.biases == null || nn.arch.length < 2) {
+            throw new IOException(pathName + " did not load");
+        }
+        for (int n : nn.arch) {
+            if (n <= 0) {
+                throw new IOException(pathName + " has an empty layer");
+            }
+        }
+        for (double[][] blocks : new double[][][]{nn.weights, nn.biases}) {
+            for (double[] block : blocks) {
+                for (double v : block) {
+                    if (!Double.isFinite(v)) {
+                        throw new IOException(pathName + " has a weight which is not finite");
+                    }
+                }
+            }
+        }
+    }
+
+    /** Reads a binary network file. Throws <tt> IOException </tt> if it cannot be read or is malformed. */
+    public static FlatNeuralNetwork readBinary(String pathName) throws IOException {
+        try (FileChannel fc = FileChannel.open(Path.of(pathName), StandardOpenOption.READ)) {
+            MappedByteBuffer map = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (map.getInt() != MAGIC) {
+                throw new IOException(pathName + " is not a binary network file");
+            }
+            int version = map.getInt();
+            if (version != VERSION) {
+                throw new IOException(pathName + " has unsupported version " + version);
+            }
+            ActivationFunction f = activation(map.getInt());
+            int precision = map.getInt();
+            if (precision != Float.BYTES && precision != Double.BYTES) {
+                throw new IOException(pathName + " has unsupported precision " + precision);
+            }
+
+            int[] arch = new int[map.getInt()];
+            for (int i = 0; i < arch.length; i++) {
+                arch[i] = map.getInt();
+            }
+            map.position(align(map.position()));
+
+            FlatNeuralNetwork nn = new FlatNeuralNetwork(arch, f);
+            for (int i = 0; i < nn.weights.length; i++) {
+                read(map, precision, nn.weights[i]);
+                read(map, precision, nn.biases[i]);
+            }
+            validate(pathName, nn);
+            return nn;
+        }
+        catch (RuntimeException e) { // buffer underflow or negative sizes
+            throw new IOException(pathName + " is malformed", e);
+        }
+    }
+
+    /** Copies the next <tt> dest.length </tt> values of <tt> map </tt> into <tt> dest </tt>. */
+    private static void read(ByteBuffer map, int precision, double[] dest) {
+        if (precision == Double.BYTES) {
+            map.asDoubleBuffer().get(dest);
+        }
+        else {
+            float[] tmp = new float[dest.length];
+            map.asFloatBuffer().get(tmp);
+            for (int i = 0; i < dest.length; i++) {
+                dest[i] = tmp[i];
+            }
+        }
+        map.position(map.position() + dest.length * precision);
+    }
+
+    /**
+     * Writes <tt> nn </tt> in the binary format, storing values as floats if <tt> precision </tt> is 4 and as doubles
+     * if it is 8. Throws <tt> IOException </tt> if the file cannot be written.
+     */
+    public static void writeBinary(String pathName, FlatNeuralNetwork nn, int precision) throws IOException {
+        if (precision != Float.BYTES && precision != Double.BYTES) {
+            throw new IllegalArgumentException("precision must be 4 or 8: " + precision);
+        }
+        int size = align(5 * Integer.BYTES + nn.arch.length * Integer.BYTES);
+        for (int i = 0; i < nn.weights.length; i++) {
+            size += (nn.weights[i].length + nn.biases[i].length) * precision;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(activationId(nn.f)).putInt(precision).putInt(nn.arch.length);
+        for (int n : nn.arch) {
+            buf.putInt(n);
+        }
+        buf.position(align(buf.position()));
+
+        for (int i = 0; i < nn.weights.length; i++) {
+            for (double[] block : new double[][]{nn.weights[i], nn.biases[i]}) {
+                for (double v : block) {
+                    if (precision == Double.BYTES) {
+                        buf.putDouble(v);
+                    }
+                    else {
+                        buf.putFloat((float) v);
+                    }
+                }
+            }
+        }
+
+        buf.flip();
+        try (FileChannel fc = FileChannel.open(Path.of(pathName), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                fc.write(buf);
+            }
+        }
+    }
+
+    /**
+     * Writes <tt> nn </tt> in the text format. The text format has no biases, so a warning is printed if any bias is
+     * not zero. Throws <tt> IOException </tt> if the file cannot be written.
+     */
+    public static void writeText(String pathName, FlatNeuralNetwork nn) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(pathName)))) {
+            for (int i = 0; i < nn.arch.length; i++) { // print architecture
+                pw.print(nn.arch[i] + " ");
+            }
+            pw.println();
+
+            for (double[] layer : nn.weights) { // print weights
+                for (double weight : layer) {
+                    pw.println(weight);
+                }
+            }
+        }
+
+        for (double[] layer : nn.biases) {
+            for (double bias : layer) {
+                if (bias != 0) {
+                    System.out.println("Biases are not stored in the text format.");
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Rounds <tt> position </tt> up to a multiple of 8. */
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    /** Returns the identifier of <tt> f </tt> in the binary format. */
+    static int activationId(ActivationFunction f) {
+        if (f instanceof ReLU) {
+            return 0;
+        }
+        else if (f instanceof Logistic) {
+            return 1;
+        }
+        else if (f instanceof SmoothReLu) {
+            return 2;
+        }
+        throw new IllegalArgumentException("Unsupported activation function: " + f.getClass().getName());
+    }
+
+    /** Returns the activation function with identifier <tt> id </tt> in the binary format. */
+    static ActivationFunction activation(int id) throws IOException {
+        switch (id) {
+            case 0: return new ReLU();
+            case 1: return new Logistic();
+            case 2: return new SmoothReLu();
+            default: throw new IOException("Unknown activation function " + id);
+        }
+    }
+
+    /** Returns the activation function named <tt> name </tt> ("relu", "logistic" or "smoothrelu"). */
+    private static ActivationFunction activation(String name) {
+        switch (name.toLowerCase()) {
+            case "relu": return new ReLU();
+            case "logistic": return new Logistic();
+            case "smoothrelu": return new SmoothReLu();
+            default: throw new IllegalArgumentException("Unknown activation function: " + name);
+        }
+    }
+
+    /**
+     * Converts between the formats:
+     *      <tt> toBinary text binary activation [float|double] </tt>
+     *      <tt> toText binary text </tt>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 4 && args[0].equals("toBinary")) {
+            FlatNeuralNetwork nn = readText(args[1], activation(args[3]));
+            int precision = (args.length >= 5 && args[4].equals("float")) ? Float.BYTES : Double.BYTES;
+            writeBinary(args[2], nn, precision);
+        }
+        else if (args.length >= 3 && args[0].equals("toText")) {
+            writeText(args[2], readBinary(args[1]));
+        }
+        else {
+            System.out.println("Usage: NetworkFile toBinary <text> <binary> <relu|logistic|smoothrelu> [float|double]");
+            System.out.println("       NetworkFile toText <binary> <text>");
+        }
+    }
+}
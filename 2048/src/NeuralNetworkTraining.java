@@ -141,15 +141,110 @@ public class NeuralNetworkTraining {
         }
     }
 
-    public static void main(String[] args) {
+    /**
+     * Saves the weights and architecture of the neural network <tt> nn </tt> into file specified by <tt> filePath
+     * </tt>, in the same format as for <tt> NeuralNetwork </tt>.
+     */
+    private static void writeNetworkToFile(String filePath, FlatNeuralNetwork nn) {
+        try {
+            NetworkFile.writeText(filePath, nn);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Trains both networks on the records at <tt> pathName </tt> without loading them into memory, streaming <tt>
+     * epoch </tt> passes of shuffled batches of <tt> batchSize </tt> records from a <tt> GameDataset </tt>. About
+     * <tt> testFraction </tt> of the records are held out and used to report the accuracy of the networks. Throws
+     * <tt> IOException </tt> if the records cannot be read.
+     */
+    private static void trainStream(String pathName, int batchSize, double testFraction, int epoch)
+            throws IOException {
+        GameDataset data = new GameDataset(pathName, testFraction, 0);
+        int shuffleBuffer = 64 * batchSize;
+        int prefetch = 4;
+
+        int[] arch = new int[]{16, 100, 50, 1};
+        FlatNeuralNetwork nn1 = new FlatNeuralNetwork(arch, 0, new Logistic());
+        FlatNeuralNetwork nn2 = new FlatNeuralNetwork(arch, 0, new Logistic());
+        double[] y1 = new double[batchSize];
+        double[] y2 = new double[batchSize];
+
+        for (int e = epoch; e > 0; e--) {
+            try (GameDataset.Pass pass = data.open(GameDataset.Subset.TRAIN, batchSize, shuffleBuffer, prefetch, e)) {
+                for (GameDataset.Batch b = pass.next(); b != null; b = pass.next()) {
+                    for (int i = 0; i < b.n; i++) {
+                        y1[i] = classifyScore(b.scores[i]);
+                        y2[i] = classifyMoveScore(b.movesLeft[i]);
+                    }
+                    nn1.trainBatch(b.x, y1, b.n, 0.75);
+                    nn2.trainBatch(b.x, y2, b.n, 0.75);
+                }
+            }
+            System.out.println(e); // used to keep track of progress when running
+        }
+
+        writeNetworkToFile("Data/NeuralNetwork1", nn1);
+        writeNetworkToFile("Data/NeuralNetwork2", nn2);
+
+        int total = 0;
+        int yCorrect1 = 0;
+        int yCorrect2 = 0;
+        double[] out1 = new double[batchSize];
+        double[] out2 = new double[batchSize];
+        try (GameDataset.Pass pass = data.open(GameDataset.Subset.TEST, batchSize, 1, prefetch, 0)) {
+            for (GameDataset.Batch b = pass.next(); b != null; b = pass.next()) {
+                nn1.forwardProp(b.x, b.n, out1);
+                nn2.forwardProp(b.x, b.n, out2);
+                for (int i = 0; i < b.n; i++) {
+                    if (Math.round(out1[i]) == classifyScore(b.scores[i])) {
+                        yCorrect1++;
+                    }
+                    if (Math.round(out2[i]) == classifyMoveScore(b.movesLeft[i])) {
+                        yCorrect2++;
+                    }
+                }
+                total += b.n;
+            }
+        }
+
+        System.out.println("Total size: " + total);
+        System.out.println("Y1 correct: " + yCorrect1);
+        System.out.println("Y2 correct: " + yCorrect2);
+    }
+
+    /**
+     * Trains both networks. With no arguments, uses per-sample gradient descent. With arguments <tt> batchSize
+     * threads </tt>, uses mini-batch gradient descent with each batch split between <tt> threads </tt> threads. With
+     * arguments <tt> stream pathName batchSize [testFraction [epochs]] </tt>, streams the records at <tt> pathName
+     * </tt> instead of loading <tt> Data/Results.txt </tt> into memory.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("stream")) {
+            double testFraction = (args.length > 3) ? Double.parseDouble(args[3]) : 0.2;
+            int epoch = (args.length > 4) ? Integer.parseInt(args[4]) : 5000;
+            trainStream(args[1], Integer.parseInt(args[2]), testFraction, epoch);
+            return;
+        }
+
         parse();
 
         int[] arch = new int[]{16, 100, 50, 1};
-        NeuralNetwork nn1 = new NeuralNetwork(arch, 0, new Logistic());
-        NeuralNetwork nn2 = new NeuralNetwork(arch, 0, new Logistic());
+        FlatNeuralNetwork nn1 = new FlatNeuralNetwork(arch, 0, new Logistic());
+        FlatNeuralNetwork nn2 = new FlatNeuralNetwork(arch, 0, new Logistic());
 
-        nn1.backProp(xTr, yTr1, 5000, 0.75);
-        nn2.backProp(xTr, yTr2, 5000, 0.75);
+        if (args.length >= 2) {
+            int batchSize = Integer.parseInt(args[0]);
+            int threads = Integer.parseInt(args[1]);
+            nn1.trainMiniBatch(xTr, yTr1, 5000, 0.75, batchSize, threads);
+            nn2.trainMiniBatch(xTr, yTr2, 5000, 0.75, batchSize, threads);
+        }
+        else {
+            nn1.backProp(xTr, yTr1, 5000, 0.75);
+            nn2.backProp(xTr, yTr2, 5000, 0.75);
+        }
 
         writeNetworkToFile("Data/NeuralNetwork1", nn1);
         writeNetworkToFile("Data/NeuralNetwork2", nn2);
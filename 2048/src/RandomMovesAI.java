@@ -1,41 +1,56 @@
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /** An AI which plays random moves. */
 public class RandomMovesAI {
     /** Board which AI plays on. */
     private Board b;
+    /** Source of the moves. */
+    private final SplittableRandom rng;
+    /** Valid moves found by <tt> chooseMove </tt>, reused between calls. */
+    private final char[] moves = new char[4];
 
     /** Default constructor: plays game on 4x4 board. */
     public RandomMovesAI() {
         b = new Board();
+        rng = new SplittableRandom();
     }
 
-    /** AI plays a random move. */
-    public void playRandom() {
-        while (!b.checkGameOver()) {
-            int size = 0;
-            char[] moves = new char[4];
+    /** Plays a game on a 4x4 board whose tiles and moves are all drawn from <tt> seed </tt>. */
+    public RandomMovesAI(long seed) {
+        b = new Board(seed);
+        rng = new SplittableRandom(~seed);
+    }
 
-            if (b.leftBoard != null) {
-                moves[size] = 'L';
-                size++;
-            }
-            if (b.rightBoard != null) {
-                moves[size] = 'R';
-                size++;
-            }
-            if (b.downBoard != null) {
-                moves[size] = 'D';
-                size++;
-            }
-            if (b.upBoard != null) {
-                moves[size] = 'U';
+    /** Returns the board which the AI plays on. */
+    public Board getBoard() {
+        return b;
+    }
+
+    /** Returns a valid move on <tt> board </tt> chosen uniformly at random, or 'A' if no move is possible. */
+    public char chooseMove(Board board) {
+        int size = 0;
+
+        for (char move : BitBoard.MOVES) { // collect valid moves without building successors
+            if (board.canShift(move)) {
+                moves[size] = move;
                 size++;
             }
+        }
 
-            b.play(moves[(int)(Math.random() * size)]);
+        return (size == 0) ? 'A' : moves[rng.nextInt(size)];
+    }
+
+    /** Plays random moves until the game is over and returns the final score. */
+    public int play() {
+        while (!b.isGameOver()) {
+            b.play(chooseMove(b));
         }
+        return b.score;
+    }
 
+    /** AI plays a random move. */
+    public void playRandom() {
+        play();
         b.printBoard();
     }
 
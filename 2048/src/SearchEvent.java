@@ -0,0 +1,38 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event committed by <tt> MinimaxAI </tt> for every move chosen while statistics are enabled. Counts
+ * are taken from the AI's <tt> SearchStats </tt>, so they include other AIs sharing the same statistics.
+ */
+@Name("ai2048.Search")
+@Label("Search")
+@Category("2048 AI")
+@Description("Search for a single move")
+@StackTrace(false)
+class SearchEvent extends Event {
+    @Label("Move")
+    char move;
+
+    @Label("Completed Depth")
+    int completedDepth;
+
+    @Label("Expectimax")
+    boolean expectimax;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Cutoffs")
+    long cutoffs;
+
+    @Label("Evaluations")
+    long evaluations;
+
+    @Label("Table Hits")
+    long tableHits;
+}
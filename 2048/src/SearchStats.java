@@ -0,0 +1,233 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers of the search of <tt> MinimaxAI </tt>: nodes visited per ply, alpha-beta cutoffs, evaluations,
+ * transposition table hits, completed depth and a histogram of the time taken per move. Enabled per AI with <tt>
+ * MinimaxAI.setStats </tt>; an AI without statistics only pays a null check per node. One instance may be shared by
+ * several AIs searching at once, and can be read through <tt> snapshot </tt> or, once registered, through JMX.
+ */
+public final class SearchStats implements SearchStatsMXBean {
+    /** Number of latency buckets: bucket <tt> i </tt> holds moves taking under <tt> 2^i </tt> microseconds. */
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] nodesPerPly = new LongAdder[MinimaxAI.MAX_DEPTH + 1];
+    private final LongAdder cutoffs = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder tableHits = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder depthSum = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+    private volatile int lastCompletedDepth;
+
+    public SearchStats() {
+        for (int i = 0; i < nodesPerPly.length; i++) {
+            nodesPerPly[i] = new LongAdder();
+        }
+    }
+
+    /** Counts a node at ply <tt> ply </tt>, 0 being the children of the root. */
+    void node(int ply) {
+        nodesPerPly[Math.min(ply, nodesPerPly.length-1)].increment();
+    }
+
+    void cutoff() {
+        cutoffs.increment();
+    }
+
+    void evaluations(int n) {
+        evaluations.add(n);
+    }
+
+    void tableHit() {
+        tableHits.increment();
+    }
+
+    /** Records a move which took <tt> nanos </tt> nanoseconds and completed a search of <tt> depth </tt> plies. */
+    void move(long nanos, int depth) {
+        moves.increment();
+        depthSum.add(depth);
+        searchNanos.add(nanos);
+        lastCompletedDepth = depth;
+        long micros = nanos / 1000;
+        latency.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS-1));
+    }
+
+    @Override
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    @Override
+    public long getNodes() {
+        long sum = 0;
+        for (LongAdder n : nodesPerPly) {
+            sum += n.sum();
+        }
+        return sum;
+    }
+
+    @Override
+    public long[] getNodesPerPly() {
+        int plies = nodesPerPly.length;
+        while (plies > 0 && nodesPerPly[plies-1].sum() == 0) { // leave out plies never reached
+            plies--;
+        }
+        long[] ret = new long[plies];
+        for (int i = 0; i < plies; i++) {
+            ret[i] = nodesPerPly[i].sum();
+        }
+        return ret;
+    }
+
+    @Override
+    public long getCutoffs() {
+        return cutoffs.sum();
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public long getTableHits() {
+        return tableHits.sum();
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        long nanos = searchNanos.sum();
+        return (nanos == 0) ? 0 : getNodes() / (nanos / 1e9);
+    }
+
+    @Override
+    public int getLastCompletedDepth() {
+        return lastCompletedDepth;
+    }
+
+    @Override
+    public double getMeanCompletedDepth() {
+        long n = moves.sum();
+        return (n == 0) ? 0 : (double) depthSum.sum() / n;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return percentile(getLatencyHistogram(), 0.5);
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return percentile(getLatencyHistogram(), 0.99);
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] ret = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            ret[i] = latency.get(i);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the upper bound in microseconds of the bucket of <tt> histogram </tt> holding the <tt> p </tt>
+     * quantile, or 0 if the histogram is empty.
+     */
+    static long percentile(long[] histogram, double p) {
+        long total = 0;
+        for (long n : histogram) {
+            total += n;
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0) {
+                return 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder n : nodesPerPly) {
+            n.reset();
+        }
+        for (LongAdder a : new LongAdder[]{cutoffs, evaluations, tableHits, moves, depthSum, searchNanos}) {
+            a.reset();
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            latency.set(i, 0);
+        }
+        lastCompletedDepth = 0;
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server as <tt> ai2048:type=SearchStats,name=name </tt> and
+     * returns the name they are registered under. Throws <tt> JMException </tt> if the name is taken.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("ai2048:type=SearchStats,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /** Returns a copy of the current statistics. */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Statistics at one point in time. Counters are read one after another while searches may be running, so they
+     * are only consistent with each other once searching has stopped.
+     */
+    public static final class Snapshot {
+        public final long moves;
+        public final long nodes;
+        public final long[] nodesPerPly;
+        public final long cutoffs;
+        public final long evaluations;
+        public final long tableHits;
+        public final double nodesPerSecond;
+        public final int lastCompletedDepth;
+        public final double meanCompletedDepth;
+        public final long[] latencyHistogram;
+
+        private Snapshot(SearchStats s) {
+            moves = s.getMoves();
+            nodesPerPly = s.getNodesPerPly();
+            long sum = 0;
+            for (long n : nodesPerPly) {
+                sum += n;
+            }
+            nodes = sum;
+            cutoffs = s.getCutoffs();
+            evaluations = s.getEvaluations();
+            tableHits = s.getTableHits();
+            nodesPerSecond = s.getNodesPerSecond();
+            lastCompletedDepth = s.getLastCompletedDepth();
+            meanCompletedDepth = s.getMeanCompletedDepth();
+            latencyHistogram = s.getLatencyHistogram();
+        }
+
+        /** Returns the <tt> p </tt> quantile of the time per move in microseconds, rounded up to a power of two. */
+        public long latencyMicros(double p) {
+            return percentile(latencyHistogram, p);
+        }
+
+        @Override
+        public String toString() {
+            return "moves " + moves + ", nodes " + nodes + " (" + (long) nodesPerSecond + "/s), cutoffs " + cutoffs
+                    + ", evaluations " + evaluations + ", table hits " + tableHits + ", depth "
+                    + String.format("%.2f", meanCompletedDepth) + ", latency p50 " + latencyMicros(0.5) + " us, p99 "
+                    + latencyMicros(0.99) + " us, nodes per ply " + java.util.Arrays.toString(nodesPerPly);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/** Management interface of <tt> SearchStats </tt>, for reading search statistics through JMX. */
+public interface SearchStatsMXBean {
+    /** Number of moves chosen. */
+    long getMoves();
+
+    /** Number of search nodes visited. */
+    long getNodes();
+
+    /** Number of nodes visited at each ply, index 0 being the children of the root. */
+    long[] getNodesPerPly();
+
+    /** Number of alpha-beta cutoffs. */
+    long getCutoffs();
+
+    /** Number of positions evaluated by the evaluator. */
+    long getEvaluations();
+
+    /** Number of nodes answered by the transposition table. */
+    long getTableHits();
+
+    /** Nodes visited per second of search time. */
+    double getNodesPerSecond();
+
+    /** Depth of the deepest search completed for the last move. */
+    int getLastCompletedDepth();
+
+    /** Average depth of the deepest search completed per move. */
+    double getMeanCompletedDepth();
+
+    /** Median time taken to choose a move, in microseconds. */
+    long getLatencyP50Micros();
+
+    /** 99th percentile of the time taken to choose a move, in microseconds. */
+    long getLatencyP99Micros();
+
+    /**
+     * Number of moves per latency bucket; bucket <tt> i </tt> holds moves which took under <tt> 2^i </tt>
+     * microseconds.
+     */
+    long[] getLatencyHistogram();
+
+    /** Sets all statistics back to zero. */
+    void reset();
+}
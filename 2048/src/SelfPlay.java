@@ -0,0 +1,172 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates training data like <tt> MinimaxAI.writeData </tt>, playing games in parallel on a pool of platform or
+ * virtual threads. Workers hand finished records to a single writer through a bounded queue, so a slow disk holds the
+ * workers back instead of piling up records in memory. Game <tt> i </tt> is played from the seed <tt> gameSeed(seed,
+ * i) </tt>, so every game can be replayed exactly with <tt> playGame </tt>.
+ */
+public class SelfPlay {
+    /** Number of worker threads. */
+    private final int threads;
+    /** True to run the workers on virtual threads. */
+    private final boolean virtual;
+    /** Seed from which the seed of every game is derived. */
+    private final long seed;
+    /** Maximum number of finished records waiting for the writer. */
+    private final int queueCapacity;
+    /** True to skip records whose board is a reflection or rotation of a board already written. */
+    private boolean deduplicate = false;
+
+    /**
+     * Initializes a generator with <tt> threads </tt> workers, on virtual threads if <tt> virtual </tt> and the JVM
+     * supports them. Games are seeded from <tt> seed </tt>.
+     */
+    public SelfPlay(int threads, boolean virtual, long seed, int queueCapacity) {
+        this.threads = threads;
+        this.virtual = virtual;
+        this.seed = seed;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Skips records whose board equals a board already written by the same run up to a reflection or rotation, as
+     * found by <tt> BitBoard.canonical </tt>. Records keep their original board.
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /** Returns the seed of game <tt> game </tt> of a run seeded with <tt> seed </tt>. */
+    public static long gameSeed(long seed, int game) {
+        long z = seed + (game + 1) * 0x9E3779B97F4A7C15L; // SplitMix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Plays a game from <tt> gameSeed </tt>. Selects a board state from the second half of the game randomly and
+     * returns it with the final score and the number of moves from the recorded board state until the end of the
+     * game.
+     */
+    public static GameRecord playGame(long gameSeed) {
+        MinimaxAI m = new MinimaxAI(new Board(gameSeed));
+        SplittableRandom pick = new SplittableRandom(~gameSeed);
+        long[] savedBoards = new long[1500];
+        int size = 0;
+
+        while (!m.b.isGameOver()) {
+            m.play();
+            if (size == savedBoards.length) {
+                savedBoards = Arrays.copyOf(savedBoards, 2 * size);
+            }
+            savedBoards[size++] = BitBoard.pack(m.b.board);
+        }
+
+        int boardIndex = (int) ((pick.nextDouble() * 0.5 * size) + (0.5 * size));
+        return new GameRecord(savedBoards[boardIndex], m.b.score, size - boardIndex);
+    }
+
+    /**
+     * Returns a factory for virtual threads, or null if the JVM does not support them. Looked up reflectively so
+     * this class also runs on JVMs without virtual threads.
+     */
+    static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Plays <tt> n </tt> games and appends one record per game to the file at <tt> pathName </tt>, in the compressed
+     * binary format of <tt> GameRecordWriter </tt> if the name ends with ".bin" and in the format of <tt>
+     * Data/Results.txt </tt> otherwise. Records are written in the order games finish. Returns the number of records
+     * written, which is less than <tt> n </tt> if duplicates were skipped. Throws <tt> IOException </tt> if unable to
+     * write to the file, and <tt> ExecutionException </tt> if a game fails.
+     */
+    public int run(int n, String pathName) throws IOException, InterruptedException, ExecutionException {
+        ThreadFactory factory = virtual ? virtualThreadFactory() : null;
+        if (virtual && factory == null) {
+            System.out.println("Virtual threads are not supported, using platform threads.");
+        }
+        ExecutorService pool = (factory == null) ? Executors.newFixedThreadPool(threads)
+                : Executors.newFixedThreadPool(threads, factory);
+        BlockingQueue<GameRecord> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger nextGame = new AtomicInteger();
+
+        List<Future<?>> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                for (int game = nextGame.getAndIncrement(); game < n; game = nextGame.getAndIncrement()) {
+                    queue.put(playGame(gameSeed(seed, game))); // blocks while the writer is behind
+                }
+                return null;
+            }));
+        }
+        pool.shutdown();
+
+        boolean binary = pathName.endsWith(".bin");
+        Set<Long> seen = deduplicate ? new HashSet<>() : null; // canonical boards written so far
+        int written = 0;
+        try (GameRecordWriter bin = binary ? new GameRecordWriter(pathName, true, true) : null;
+             PrintWriter pw = binary ? null : new PrintWriter(new BufferedWriter(new FileWriter(pathName, true)))) {
+            int received = 0;
+            while (received < n) {
+                GameRecord record = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (record != null) {
+                    received++;
+                    if (seen != null && !seen.add(BitBoard.canonical(record.board))) {
+                        continue; // symmetric to a record already written
+                    }
+                    if (binary) {
+                        bin.write(record);
+                    }
+                    else {
+                        pw.println(record.toText());
+                    }
+                    written++;
+                }
+                else {
+                    for (Future<?> w : workers) { // surface failed workers instead of waiting forever
+                        if (w.isDone()) {
+                            w.get();
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return written;
+    }
+
+    /** Arguments: <tt> games pathName [threads [virtual [seed [deduplicate]]]] </tt>. */
+    public static void main(String[] args) throws Exception {
+        int n = Integer.parseInt(args[0]);
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        boolean virtual = args.length > 3 && Boolean.parseBoolean(args[3]);
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : System.nanoTime();
+        boolean deduplicate = args.length > 5 && Boolean.parseBoolean(args[5]);
+
+        long start = System.nanoTime();
+        SelfPlay selfPlay = new SelfPlay(threads, virtual, seed, 4 * threads);
+        selfPlay.setDeduplicate(deduplicate);
+        int written = selfPlay.run(n, args[1]);
+        System.out.println(n + " games in " + (System.nanoTime() - start) / 1e9 + " s, seed " + seed + ", "
+                + written + " records written");
+    }
+}
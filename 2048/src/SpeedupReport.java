@@ -0,0 +1,90 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how the parallel search of <tt> MinimaxAI </tt> scales with the number of threads. Searches the same board
+ * states, read from <tt> Data/Results.txt </tt>, with 1, 2, 4, ... threads up to the number of available cores, or
+ * another maximum, and prints the time taken, the speedup over one thread and the parallel efficiency.
+ */
+public class SpeedupReport {
+    /**
+     * Reads the first <tt> n </tt> board states from the sample data at <tt> pathName </tt>. Throws <tt> IOException
+     * </tt> if the file cannot be read.
+     */
+    static List<Board> readBoards(String pathName, int n) throws IOException {
+        List<Board> boards = new ArrayList<>(n);
+        try (BufferedReader br = new BufferedReader(new FileReader(pathName))) {
+            String line = br.readLine();
+            while (line != null && boards.size() < n) {
+                String[] s = line.split("\\s+");
+                int[][] tiles = new int[4][4];
+                for (int k = 0; k < 16; k++) {
+                    tiles[k / 4][k % 4] = Integer.parseInt(s[k]);
+                }
+                boards.add(new Board(tiles, 0));
+                line = br.readLine();
+            }
+        }
+        return boards;
+    }
+
+    /** Returns the time in nanoseconds taken to choose a move on every board in <tt> boards </tt>. */
+    private static long time(MinimaxAI m, List<Board> boards) {
+        long start = System.nanoTime();
+        for (Board board : boards) {
+            m.b = board;
+            m.chooseMove();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Prints the speedup report for a search of <tt> depth </tt> plies on <tt> positions </tt> sample boards. Chance
+     * nodes with at least <tt> splitDepth </tt> plies left are split when using expectimax. Goes up to <tt>
+     * maxThreads </tt> threads.
+     */
+    private static void report(boolean expectimax, int depth, int splitDepth, int positions, int maxThreads)
+            throws IOException {
+        List<Board> boards = readBoards("Data/Results.txt", positions);
+        System.out.println((expectimax ? "expectimax" : "minimax") + " depth " + depth + ", " + boards.size()
+                + " positions, " + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.println("threads,seconds,speedup,efficiency,nodes/s");
+
+        double base = 0;
+        for (int threads = 1; ; threads = Math.min(2 * threads, maxThreads)) { // 1, 2, 4, ..., maxThreads
+            MinimaxAI m = new MinimaxAI();
+            m.setStats(new SearchStats());
+            m.setDepth(depth);
+            m.setExpectimax(expectimax);
+            m.setThreads(threads);
+            m.setSplitDepth(splitDepth);
+
+            time(m, boards); // warm up, so the first configuration is not timed while still being compiled
+            long nodes = m.getNodes();
+            double seconds = time(m, boards) / 1e9;
+            nodes = m.getNodes() - nodes;
+            m.setThreads(1);
+
+            if (threads == 1) {
+                base = seconds;
+            }
+            double speedup = base / seconds;
+            System.out.printf("%d,%.3f,%.2f,%.2f,%d%n", threads, seconds, speedup, speedup / threads,
+                    (long) (nodes / seconds));
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Arguments: <tt> [maxThreads] </tt>, the number of available cores by default. More threads than cores measure
+     * the overhead of the parallel search rather than its speedup.
+     */
+    public static void main(String[] args) throws IOException {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        report(false, 8, 0, 50, maxThreads);
+        report(true, 5, 3, 50, maxThreads);
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Trains an <tt> NTupleNetwork </tt> by temporal-difference learning on afterstates, TD(0), from games it plays
+ * itself. Every move is chosen greedily by the reward of the move plus the value of the board after the move, before
+ * the new tile spawns (the afterstate). The value of each afterstate is then moved towards the reward and afterstate
+ * value of the next move, or towards 0 when the game ends.
+ * <p>
+ * Games are played in parallel and all threads update the same network without locks (Hogwild). Every <tt>
+ * snapshotEvery </tt> games the network is written to a temporary file which then atomically replaces the snapshot,
+ * so readers such as <tt> MinimaxAI </tt>, through <tt> setEvaluator(NTupleNetwork.load(pathName)) </tt>, never see
+ * a partly written file. Game <tt> i </tt> is played from the seed <tt> SelfPlay.gameSeed(seed, i) </tt>, although
+ * the moves also depend on the updates of other threads.
+ */
+public class TDTraining {
+    private final NTupleNetwork net;
+    /** Learning rate, shared among the weights evaluating a board. */
+    private final float rate;
+    private final int threads;
+    private final long seed;
+
+    /** Games started so far. */
+    private final AtomicInteger nextGame = new AtomicInteger();
+    /** Games finished so far. */
+    private final AtomicInteger finished = new AtomicInteger();
+    /** Scores and number of the games finished since the last report. */
+    private final LongAdder windowScore = new LongAdder();
+    private final LongAdder windowGames = new LongAdder();
+    /** Games in the window reaching a 2048 tile. */
+    private final LongAdder window2048 = new LongAdder();
+    /** <tt> System.nanoTime() </tt> of the last report. */
+    private long lastReport;
+
+    /**
+     * Initializes a trainer updating <tt> net </tt> with learning rate <tt> rate </tt> on <tt> threads </tt> threads,
+     * with games seeded from <tt> seed </tt>.
+     */
+    public TDTraining(NTupleNetwork net, double rate, int threads, long seed) {
+        this.net = net;
+        this.rate = (float) (rate / (BitBoard.SYMMETRIES * net.weights.length));
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * Plays and learns from <tt> n </tt> games. Prints the games per second, average score and 2048 rate every <tt>
+     * reportEvery </tt> games, and writes the network to <tt> pathName </tt> every <tt> snapshotEvery </tt> games and
+     * at the end. An interval of 0 turns off reports or intermediate snapshots; the network is still written at the
+     * end. Throws <tt> IOException </tt> if a snapshot cannot be written and <tt> ExecutionException </tt> if a game
+     * fails.
+     */
+    public void run(int n, String pathName, int snapshotEvery, int reportEvery)
+            throws IOException, InterruptedException, ExecutionException {
+        if (snapshotEvery < 0 || reportEvery < 0) {
+            throw new IllegalArgumentException("intervals must not be negative: " + snapshotEvery + ", " + reportEvery);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        lastReport = System.nanoTime();
+        try {
+            List<Future<Void>> workers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    for (int game = nextGame.getAndIncrement(); game < n; game = nextGame.getAndIncrement()) {
+                        playGame(SelfPlay.gameSeed(seed, game));
+                        int done = finished.incrementAndGet();
+                        if (reportEvery > 0 && done % reportEvery == 0) {
+                            report(done);
+                        }
+                        if (snapshotEvery > 0 && done % snapshotEvery == 0 && done < n) {
+                            snapshot(pathName);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> w : workers) {
+                w.get();
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        snapshot(pathName);
+    }
+
+    /** Plays a game from <tt> gameSeed </tt>, updating the network after every move. Returns the final score. */
+    int playGame(long gameSeed) {
+        TileSpawner spawner = TileSpawner.seeded(gameSeed);
+        long board = spawn(spawn(0, spawner), spawner);
+        int score = 0;
+        long prev = 0; // afterstate of the previous move; 0 before the first move
+        boolean first = true;
+
+        while (true) {
+            long after = 0;
+            int reward = 0;
+            double best = Double.NEGATIVE_INFINITY;
+            for (char move : BitBoard.MOVES) {
+                long next = BitBoard.move(board, move);
+                if (next != board) {
+                    int r = BitBoard.moveScore(board, move);
+                    double val = net.evaluate(next, r);
+                    if (val > best) {
+                        best = val;
+                        after = next;
+                        reward = r;
+                    }
+                }
+            }
+
+            if (!first) { // V(prev) += rate * (reward + V(after) - V(prev)), with V = 0 once the game is over
+                double target = (best == Double.NEGATIVE_INFINITY) ? 0 : best;
+                net.update(prev, rate * (float) (target - net.evaluate(prev, 0)));
+            }
+            if (best == Double.NEGATIVE_INFINITY) { // no move left
+                break;
+            }
+
+            score += reward;
+            prev = after;
+            first = false;
+            board = spawn(after, spawner);
+        }
+
+        windowScore.add(score);
+        windowGames.increment();
+        if (maxExponent(board) >= 11) {
+            window2048.increment();
+        }
+        return score;
+    }
+
+    /** Returns <tt> b </tt> with a tile from <tt> spawner </tt> on one of its empty squares. */
+    private static long spawn(long b, TileSpawner spawner) {
+        int square = spawner.nextSquare(BitBoard.countEmpty(b));
+        return BitBoard.spawn(b, square, spawner.nextExponent());
+    }
+
+    private static int maxExponent(long b) {
+        int max = 0;
+        for (; b != 0; b >>>= 4) {
+            max = Math.max(max, (int) (b & 0xF));
+        }
+        return max;
+    }
+
+    /**
+     * Prints the progress of training over the games finished since the last report. Games finishing during the
+     * report may be counted in either window.
+     */
+    private synchronized void report(int done) {
+        long now = System.nanoTime();
+        long games = windowGames.sumThenReset();
+        long score = windowScore.sumThenReset();
+        long won = window2048.sumThenReset();
+        double seconds = (now - lastReport) / 1e9;
+        lastReport = now;
+        if (games > 0) {
+            System.out.printf("%d games, %.1f games/s, average score %.0f, 2048 rate %.3f%n", done, games / seconds,
+                    (double) score / games, (double) won / games);
+        }
+    }
+
+    /**
+     * Writes the network to a temporary file next to <tt> pathName </tt> and moves it over <tt> pathName </tt> in one
+     * step. Training continues on the other threads meanwhile, so the snapshot mixes weights from a few games.
+     */
+    private synchronized void snapshot(String pathName) throws IOException {
+        Path target = Path.of(pathName).toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        net.save(tmp.toString());
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Arguments: <tt> games [pathName [threads [snapshotEvery [rate [seed]]]]] </tt>, with <tt> snapshotEvery </tt> 0
+     * to only write the network at the end. Continues training the network at <tt> pathName </tt> (<tt>
+     * Data/NTupleNetwork.bin </tt> by default) if it exists, otherwise starts from zero weights with the default
+     * tuples.
+     */
+    public static void main(String[] args) throws Exception {
+        int n = Integer.parseInt(args[0]);
+        String pathName = (args.length > 1) ? args[1] : NTupleNetwork.DEFAULT_FILE;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int snapshotEvery = (args.length > 3) ? Integer.parseInt(args[3]) : 100000;
+        double rate = (args.length > 4) ? Double.parseDouble(args[4]) : 0.1;
+        long seed = (args.length > 5) ? Long.parseLong(args[5]) : System.nanoTime();
+
+        NTupleNetwork net = new File(pathName).exists() ? NTupleNetwork.load(pathName) : new NTupleNetwork();
+        long start = System.nanoTime();
+        int reportEvery = (snapshotEvery > 0) ? Math.min(1000, snapshotEvery) : 1000;
+        new TDTraining(net, rate, threads, seed).run(n, pathName, snapshotEvery, reportEvery);
+        System.out.println(n + " games in " + (System.nanoTime() - start) / 1e9 + " s, seed " + seed);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Heuristic evaluation function which scores every possible row once, when constructed, and then scores a board with
+ * eight table lookups: its four rows and its four columns. Each line is scored from the exponents of its tiles by a
+ * weighted sum of features:
+ * <ul>
+ *     <li> empty squares, which keep the game going;
+ *     <li> merges, the number of tiles which can merge with an equal neighbour, ignoring empty squares between them;
+ *     <li> monotonicity, the smaller of the total increase and the total decrease of <tt> exponent^power </tt> along
+ *          the line, which is 0 for lines sorted in either direction;
+ *     <li> smoothness, the sum of the differences between the exponents of adjacent tiles;
+ *     <li> sum, the sum of <tt> exponent^power </tt>, which penalizes keeping many large tiles unmerged.
+ * </ul>
+ * Every feature reads the same forwards and backwards, so a board scores the same as its reflections and rotations.
+ */
+public class TableEvaluator implements Evaluator {
+    /** Weights of the features; the defaults are tuned for expectimax search. */
+    public static class Weights {
+        /** Constant added per line, keeping values of live positions positive. */
+        public double line = 200000;
+        public double empty = 270;
+        public double merges = 700;
+        public double monotonicity = 47;
+        public double monotonicityPower = 4;
+        public double smoothness = 0;
+        public double sum = 11;
+        public double sumPower = 3.5;
+        /** Weight of the game score, which is not part of the tables. */
+        public double score = 0;
+    }
+
+    /** Score of every possible row. */
+    private final float[] table = new float[BitBoard.ROWS];
+    private final double scoreWeight;
+
+    /** Initializes an evaluator with the default weights. */
+    public TableEvaluator() {
+        this(new Weights());
+    }
+
+    /** Initializes an evaluator with weights <tt> w </tt>. */
+    public TableEvaluator(Weights w) {
+        scoreWeight = w.score;
+        int[] line = new int[4];
+        for (int row = 0; row < BitBoard.ROWS; row++) {
+            for (int j = 0; j < 4; j++) {
+                line[j] = (row >>> (4 * j)) & 0xF;
+            }
+            table[row] = (float) score(line, w);
+        }
+    }
+
+    /** Returns the score of the line of exponents <tt> line </tt>. */
+    static double score(int[] line, Weights w) {
+        int empty = 0;
+        int merges = 0;
+        double sum = 0;
+        int prev = 0;
+        int counter = 0;
+        for (int e : line) {
+            sum += Math.pow(e, w.sumPower);
+            if (e == 0) {
+                empty++;
+            }
+            else {
+                if (prev == e) {
+                    counter++;
+                }
+                else if (counter > 0) {
+                    merges += 1 + counter;
+                    counter = 0;
+                }
+                prev = e;
+            }
+        }
+        if (counter > 0) {
+            merges += 1 + counter;
+        }
+
+        double increase = 0;
+        double decrease = 0;
+        int roughness = 0;
+        for (int j = 1; j < 4; j++) {
+            double a = Math.pow(line[j-1], w.monotonicityPower);
+            double c = Math.pow(line[j], w.monotonicityPower);
+            if (line[j-1] > line[j]) {
+                decrease += a - c;
+            }
+            else {
+                increase += c - a;
+            }
+            if (line[j-1] != 0 && line[j] != 0) {
+                roughness += Math.abs(line[j-1] - line[j]);
+            }
+        }
+
+        return w.line + w.empty * empty + w.merges * merges - w.monotonicity * Math.min(increase, decrease)
+                - w.smoothness * roughness - w.sum * sum;
+    }
+
+    @Override
+    public double evaluate(long board, int score) {
+        long t = BitBoard.transpose(board);
+        return scoreWeight * score
+                + table[(int) (board & 0xFFFF)] + table[(int) ((board >>> 16) & 0xFFFF)]
+                + table[(int) ((board >>> 32) & 0xFFFF)] + table[(int) (board >>> 48)]
+                + table[(int) (t & 0xFFFF)] + table[(int) ((t >>> 16) & 0xFFFF)]
+                + table[(int) ((t >>> 32) & 0xFFFF)] + table[(int) (t >>> 48)];
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+}
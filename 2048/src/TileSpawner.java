@@ -0,0 +1,61 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses where the tile spawned after each move appears and whether it is a 2 or a 4. Every <tt> Board </tt> owns its
+ * spawner, so games running in parallel do not share a random number generator, and a game played from a seeded
+ * spawner can be replayed exactly from its seed and moves.
+ */
+public interface TileSpawner {
+    /** Returns the index of the empty square to fill, between 0 and <tt> free </tt> (exclusive), in row-major order. */
+    int nextSquare(int free);
+
+    /** Returns the exponent of the new tile: 1 (a 2) with probability 0.9 and 2 (a 4) otherwise. */
+    int nextExponent();
+
+    /** Returns a spawner drawing from a <tt> SplittableRandom </tt> seeded with <tt> seed </tt>. */
+    static TileSpawner seeded(long seed) {
+        return new Seeded(seed);
+    }
+
+    /** Returns a spawner drawing from the <tt> ThreadLocalRandom </tt> of the calling thread. Not reproducible. */
+    static TileSpawner threadLocal() {
+        return PerThread.INSTANCE;
+    }
+
+    /** Spawner of <tt> seeded </tt>. */
+    final class Seeded implements TileSpawner {
+        private final SplittableRandom rng;
+
+        Seeded(long seed) {
+            rng = new SplittableRandom(seed);
+        }
+
+        @Override
+        public int nextSquare(int free) {
+            return rng.nextInt(free);
+        }
+
+        @Override
+        public int nextExponent() {
+            return (rng.nextDouble() < 0.9) ? 1 : 2;
+        }
+    }
+
+    /** Spawner of <tt> threadLocal </tt>. */
+    final class PerThread implements TileSpawner {
+        static final PerThread INSTANCE = new PerThread();
+
+        private PerThread() {}
+
+        @Override
+        public int nextSquare(int free) {
+            return ThreadLocalRandom.current().nextInt(free);
+        }
+
+        @Override
+        public int nextExponent() {
+            return (ThreadLocalRandom.current().nextDouble() < 0.9) ? 1 : 2;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Fixed-size cache of search results for <tt> MinimaxAI </tt>, keyed by packed board (see <tt> BitBoard </tt>) and
+ * game score. Each entry keeps the value, the depth it was searched to and whether the value is exact or only a lower
+ * or upper bound. Entries are grouped in buckets of two: the first slot is only replaced by a search at least as deep
+ * (depth-preferred), the second slot is always replaced. Entries are written without locks; each one is stored with a
+ * checksum over all of its words, so an entry torn by a concurrent write is treated as a miss.
+ */
+public class TranspositionTable {
+    /** Value is exact. */
+    public static final int EXACT = 0;
+    /** Value is a lower bound: the search failed high. */
+    public static final int LOWER = 1;
+    /** Value is an upper bound: the search failed low. */
+    public static final int UPPER = 2;
+
+    /** Bytes used by a single entry. */
+    private static final int ENTRY_BYTES = 3 * Long.BYTES;
+
+    /** Board xor meta xor value; zero for an empty slot. */
+    private final long[] checks;
+    /** Score in the upper 32 bits, depth in bits 8 to 15, bound in the lowest 8 bits. */
+    private final long[] metas;
+    /** Raw bits of the stored value. */
+    private final long[] values;
+    /** Mask selecting a bucket from a hash. */
+    private final int mask;
+
+    /** Initializes an empty table using at most <tt> megabytes </tt> of memory (at least two entries). */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(2, ((long) megabytes << 20) / ENTRY_BYTES);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / 2, 1 << 29));
+        checks = new long[2 * buckets];
+        metas = new long[2 * buckets];
+        values = new long[2 * buckets];
+        mask = buckets - 1;
+    }
+
+    /** Returns the number of entries the table can hold. */
+    public int capacity() {
+        return checks.length;
+    }
+
+    /** Removes all entries. */
+    public void clear() {
+        java.util.Arrays.fill(checks, 0);
+        java.util.Arrays.fill(metas, 0);
+        java.util.Arrays.fill(values, 0);
+    }
+
+    /** Mixes the board and score into a bucket index. */
+    private int bucket(long board, int score) {
+        long h = board ^ (score * 0x9E3779B97F4A7C15L);
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return 2 * ((int) h & mask);
+    }
+
+    private static long meta(int score, int depth, int bound) {
+        return ((long) score << 32) | ((depth & 0xFF) << 8) | bound;
+    }
+
+    /**
+     * Returns the cached value of <tt> board </tt> with score <tt> score </tt> if it was searched to at least <tt>
+     * depth </tt> and the stored bound settles the window (<tt> alpha </tt>, <tt> beta </tt>). Returns NaN otherwise.
+     */
+    public double lookup(long board, int score, int depth, double alpha, double beta) {
+        int index = bucket(board, score);
+        for (int slot = index; slot < index + 2; slot++) {
+            long meta = metas[slot];
+            long value = values[slot];
+            if ((checks[slot] ^ meta ^ value) != board || (int) (meta >>> 32) != score || checks[slot] == 0) {
+                continue; // different position, empty slot or torn entry
+            }
+            if (((meta >>> 8) & 0xFF) < depth) {
+                continue; // searched too shallow
+            }
+
+            double val = Double.longBitsToDouble(value);
+            int bound = (int) (meta & 0xFF);
+            if (bound == EXACT || (bound == LOWER && val >= beta) || (bound == UPPER && val <= alpha)) {
+                return val;
+            }
+            return Double.NaN;
+        }
+        return Double.NaN;
+    }
+
+    /** Stores the result of searching <tt> board </tt> with score <tt> score </tt> to <tt> depth </tt> plies. */
+    public void store(long board, int score, int depth, double val, int bound) {
+        int slot = bucket(board, score);
+        if (checks[slot] != 0 && ((metas[slot] >>> 8) & 0xFF) > depth) {
+            slot++; // keep the deeper entry, even of the same position, and use the always-replace slot
+        }
+
+        long meta = meta(score, depth, bound);
+        long value = Double.doubleToRawLongBits(val);
+        metas[slot] = meta;
+        values[slot] = value;
+        checks[slot] = board ^ meta ^ value;
+    }
+}